@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi;
+
+import be.fedict.demo.contractorapi.helper.CatClasses;
+import be.fedict.demo.contractorapi.helper.CborEncoder;
+import be.fedict.demo.contractorapi.helper.ContractorDAO;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.json.bind.Jsonb;
+import javax.json.bind.JsonbBuilder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark mapping of cells to a contractor object, and serialization to JSON and CBOR.
+ * 
+ * @author Bart Hanssens
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ContractorBenchmark {
+	private static final String CATEGORIES = "D (5) D24 (2) E (3) G (1) P1 (4) ";
+
+	private Jsonb jsonb;
+	private ContractorDAO contractor;
+
+	@Setup
+	public void setup() {
+		jsonb = JsonbBuilder.create();
+
+		contractor = new ContractorDAO();
+		contractor.setCbeId("0123.456.749");
+		contractor.setVatId("BE 0123.456.749");
+		contractor.setName("Aannemer & Zonen");
+		contractor.setLicenseNo("12345");
+		contractor.setStreet("Kerkstraat 1");
+		contractor.setPostalCode("1000");
+		contractor.setMunicipality("Brussel");
+		contractor.setFromDate(ContractorDAO.parseDate("2019-01-01"));
+		contractor.setTillDate(ContractorDAO.parseDate("2025-12-31"));
+		contractor.setCatClassCodes(CatClasses.parse(CATEGORIES));
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		jsonb.close();
+	}
+
+	@Benchmark
+	public short[] categories() {
+		return CatClasses.parse(CATEGORIES);
+	}
+
+	@Benchmark
+	public ContractorDAO dates() {
+		ContractorDAO c = new ContractorDAO();
+		c.setFromDate(ContractorDAO.parseDate("2019-01-01"));
+		c.setTillDate(ContractorDAO.parseDate("2025-12-31"));
+		return c;
+	}
+
+	@Benchmark
+	public String json() {
+		return jsonb.toJson(contractor);
+	}
+
+	@Benchmark
+	public byte[] cbor() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+		CborEncoder enc = new CborEncoder(out);
+		CborBodyWriter.write(enc, contractor);
+		enc.flush();
+		return out.toByteArray();
+	}
+}
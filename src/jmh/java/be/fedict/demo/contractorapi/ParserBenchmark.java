@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi;
+
+import be.fedict.demo.contractorapi.helper.ContractorDAO;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.NotFoundException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark parsing of the search results, using the test fixtures and generated tables.
+ * 
+ * @author Bart Hanssens
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ParserBenchmark {
+	private static final String TITLES = "KBO nummer,BTW nummer,aannemer,Erkenningsnummer,straat,Postcode,Gemeente,"
+											+ "Beslissingsdatum,vervaldatum,categorie klassen";
+
+	@Param({"true", "false"})
+	boolean streaming;
+
+	private SearchResultReader resultReader;
+	private SearchListReader listReader;
+
+	private byte[] found;
+	private byte[] notFound;
+
+	/**
+	 * Generated table with a large number of rows
+	 */
+	@State(Scope.Thread)
+	public static class Table {
+		@Param({"100", "1000"})
+		int rows;
+
+		private byte[] xml;
+
+		@Setup
+		public void setup() {
+			xml = generateTable(rows);
+		}
+	}
+
+	static byte[] getResource(String name) throws IOException {
+		try (InputStream in = ParserBenchmark.class.getClassLoader().getResourceAsStream(name)) {
+			return in.readAllBytes();
+		}
+	}
+
+	/**
+	 * Generate a partial response with a table of contractors
+	 * 
+	 * @param rows number of rows
+	 * @return XML as bytes
+	 */
+	static byte[] generateTable(int rows) {
+		StringBuilder sb = new StringBuilder(rows * 400);
+		sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<partial-response><changes>")
+			.append("<update id=\"mainForm:dataTab\"><![CDATA[<table><thead id=\"mainForm:dataTab_head\"><tr>");
+		for (String title: TITLES.split(",")) {
+			sb.append("<th><span class='ui-column-title'>").append(title).append("</span></th>");
+		}
+		sb.append("</tr></thead><tbody id=\"mainForm:dataTab_data\">");
+		for (int i = 0; i < rows; i++) {
+			String id = String.format("0%03d.%03d.%03d", i / 1000000 % 1000, i / 1000 % 1000, i % 1000);
+			sb.append("<tr data-ri=\"").append(i).append("\" class=\"ui-widget-content\">")
+				.append("<td><button type=\"submit\"><span class=\"ui-button-text\">ui-button</span></button>")
+				.append(id).append("</td><td>BE ").append(id).append("</td>")
+				.append("<td>Aannemer &amp; Zonen ").append(i).append("</td><td>").append(10000 + i).append("</td>")
+				.append("<td>Kerkstraat ").append(i % 200).append("</td><td>").append(1000 + i % 9000).append("</td>")
+				.append("<td>Gemeente</td><td>2019-01-01</td><td>2025-12-31</td>")
+				.append("<td>D (5) D24 (2) E (3) G (1) </td></tr>");
+		}
+		sb.append("</tbody></table>]]></update></changes></partial-response>");
+		return sb.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Setup
+	public void setup() throws IOException {
+		resultReader = new SearchResultReader(streaming);
+		listReader = new SearchListReader(resultReader);
+
+		found = getResource("found.xml");
+		notFound = getResource("notfound.xml");
+	}
+
+	@Benchmark
+	public ContractorDAO parseFound() throws IOException {
+		return resultReader.readFrom(ContractorDAO.class, ContractorDAO.class, null, null, null, 
+										new ByteArrayInputStream(found));
+	}
+
+	@Benchmark
+	public Object parseNotFound() throws IOException {
+		try {
+			return resultReader.readFrom(ContractorDAO.class, ContractorDAO.class, null, null, null, 
+										new ByteArrayInputStream(notFound));
+		} catch (NotFoundException nfe) {
+			return nfe;
+		}
+	}
+
+	@Benchmark
+	public List<ContractorDAO> parseTable(Table table) throws IOException {
+		return listReader.readFrom(null, null, null, null, null, new ByteArrayInputStream(table.xml));
+	}
+}
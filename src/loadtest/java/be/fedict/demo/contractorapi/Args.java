@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Minimal command line parsing of "--name value" pairs
+ * 
+ * @author Bart Hanssens
+ */
+public class Args {
+	private final Map<String, String> values = new HashMap<>();
+
+	/**
+	 * Constructor
+	 * 
+	 * @param args command line arguments
+	 */
+	public Args(String[] args) {
+		for (int i = 0; i < args.length; i++) {
+			if (!args[i].startsWith("--")) {
+				throw new IllegalArgumentException("Unexpected argument " + args[i]);
+			}
+			String name = args[i].substring(2);
+			// options without value are flags
+			String val = (i + 1 < args.length && !args[i + 1].startsWith("--")) ? args[++i] : "true";
+			values.put(name, val);
+		}
+	}
+
+	public boolean has(String name) {
+		return values.containsKey(name);
+	}
+
+	public String get(String name, String def) {
+		return values.getOrDefault(name, def);
+	}
+
+	public int getInt(String name, int def) {
+		return has(name) ? Integer.parseInt(values.get(name)) : def;
+	}
+
+	public long getLong(String name, long def) {
+		return has(name) ? Long.parseLong(values.get(name)) : def;
+	}
+
+	public double getDouble(String name, double def) {
+		return has(name) ? Double.parseDouble(values.get(name)) : def;
+	}
+}
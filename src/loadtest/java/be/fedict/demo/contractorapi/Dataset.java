@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi;
+
+import java.time.LocalDate;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Deterministic generated set of contractors, used by both the upstream simulator and the load generator,
+ * so the load generator can request IDs that the simulator knows about.
+ * 
+ * @author Bart Hanssens
+ */
+public class Dataset {
+	private static final int BASE = 2_000_000;
+
+	private static final String[] FIRST = { "Aannemer", "Bouw", "Constructions", "Dakwerken", "Elektro", 
+		"Groep", "Renovatie", "Entreprise", "Techniek", "Wegenbouw", "Bâtiment", "Sanitair" };
+	private static final String[] LAST = { "Peeters", "Janssens", "Maes", "Jacobs", "Mertens", "Willems", 
+		"Claes", "Goossens", "Dubois", "Lambert", "Dupont", "Martin", "Simon", "Laurent" };
+	private static final String[] FORM = { "NV", "BV", "SA", "SRL", "& Zonen", "et Fils", "" };
+	private static final String[] STREET = { "Kerkstraat", "Stationsstraat", "Rue de la Gare", "Dorpstraat", 
+		"Molenstraat", "Rue de l'Église", "Nieuwstraat", "Chaussée de Bruxelles" };
+	private static final String[][] PLACE = { { "1000", "Brussel" }, { "2000", "Antwerpen" }, 
+		{ "3000", "Leuven" }, { "3500", "Hasselt" }, { "4000", "Liège" }, { "5000", "Namur" }, 
+		{ "6000", "Charleroi" }, { "7000", "Mons" }, { "8000", "Brugge" }, { "9000", "Gent" } };
+	private static final String[] CATEGORY = { "A", "B", "C", "D", "D1", "D24", "E", "F", "G", "P1" };
+
+	private final int size;
+	private final long seed;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param size number of contractors
+	 * @param seed random seed
+	 */
+	public Dataset(int size, long seed) {
+		this.size = size;
+		this.seed = seed;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Get the enterprise number (10 digits, valid mod 97 check) of the n-th contractor
+	 * 
+	 * @param n index
+	 * @return enterprise number
+	 */
+	public String id(int n) {
+		long base = BASE + n;
+		return String.format("%08d%02d", base, 97 - (base % 97));
+	}
+
+	/**
+	 * Get the index of a contractor by enterprise number
+	 * 
+	 * @param id enterprise number, only digits are taken into account
+	 * @return index or -1 when not in the dataset
+	 */
+	public int indexOf(String id) {
+		String digits = id.replaceAll("\\D", "");
+		if (digits.length() != 10) {
+			return -1;
+		}
+		int n = Integer.parseInt(digits.substring(0, 8)) - BASE;
+		return (n >= 0 && n < size && id(n).equals(digits)) ? n : -1;
+	}
+
+	/**
+	 * Format an enterprise number as 0123.456.789
+	 * 
+	 * @param id 10 digits
+	 * @return formatted number
+	 */
+	private static String format(String id) {
+		return id.substring(0, 4) + "." + id.substring(4, 7) + "." + id.substring(7);
+	}
+
+	private static String pick(Random rnd, String[] values) {
+		return values[rnd.nextInt(values.length)];
+	}
+
+	/**
+	 * Generated fields of one contractor, always in the same order for the same seed
+	 */
+	private static class Fields {
+		private final String[] place;
+		private final LocalDate from;
+		private final String till;
+		private final StringBuilder cats = new StringBuilder();
+		private final String name;
+		private final String street;
+
+		Fields(Random rnd) {
+			place = PLACE[rnd.nextInt(PLACE.length)];
+			from = LocalDate.of(2010, 1, 1).plusDays(rnd.nextInt(3650));
+			till = rnd.nextInt(4) == 0 ? "" : from.plusYears(1 + rnd.nextInt(10)).toString();
+			for (int i = rnd.nextInt(4); i >= 0; i--) {
+				cats.append(pick(rnd, CATEGORY)).append(" (").append(1 + rnd.nextInt(8)).append(") ");
+			}
+			name = (pick(rnd, FIRST) + " " + pick(rnd, LAST) + " " + pick(rnd, FORM)).trim();
+			street = pick(rnd, STREET) + " " + (1 + rnd.nextInt(200));
+		}
+	}
+
+	/**
+	 * Check if the n-th contractor matches the filters of the webform
+	 * 
+	 * @param n index
+	 * @param postalCode postal code or null
+	 * @param category category or null
+	 * @param name part of the name (case insensitive) or null
+	 * @return true if all filters match
+	 */
+	public boolean matches(int n, String postalCode, String category, String name) {
+		Fields f = new Fields(new Random(seed + n));
+		if (postalCode != null && !postalCode.equals(f.place[0])) {
+			return false;
+		}
+		if (category != null && !(" " + f.cats).contains(" " + category + " (")) {
+			return false;
+		}
+		return name == null || f.name.toLowerCase(Locale.ROOT).contains(name.toLowerCase(Locale.ROOT));
+	}
+
+	/**
+	 * Render the n-th contractor as an HTML table row, as returned by the webform
+	 * 
+	 * @param n index
+	 * @return table row
+	 */
+	public String row(int n) {
+		Fields f = new Fields(new Random(seed + n));
+		String id = format(id(n));
+
+		return new StringBuilder(256).append("<tr data-ri=\"").append(n).append("\">")
+			.append("<td>").append(id).append("</td>")
+			.append("<td>BE ").append(id).append("</td>")
+			.append("<td>").append(escape(f.name)).append("</td>")
+			.append("<td>").append(10000 + n).append("</td>")
+			.append("<td>").append(escape(f.street)).append("</td>")
+			.append("<td>").append(f.place[0]).append("</td>")
+			.append("<td>").append(f.place[1]).append("</td>")
+			.append("<td>").append(f.from).append("</td>")
+			.append("<td>").append(f.till).append("</td>")
+			.append("<td>").append(f.cats).append("</td>")
+			.append("</tr>").toString();
+	}
+
+	private static String escape(String str) {
+		return str.replace("&", "&amp;").replace("'", "&#39;");
+	}
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Load generator for the API, reporting throughput and latency percentiles.
+ * 
+ * Requests use the IDs of the generated dataset of the upstream simulator.
+ * By default every thread sends the next request as soon as the previous one completes (closed loop).
+ * With a fixed request rate, latency is measured from the intended start time, 
+ * so a stalled server is not hidden by the load generator slowing down (coordinated omission).
+ * 
+ * @author Bart Hanssens
+ */
+public class LoadGenerator {
+	private final HttpClient client;
+	private final String url;
+	private final Dataset dataset;
+	private final int keys;
+	private final long interval;
+
+	/**
+	 * Latencies and status codes collected by one thread
+	 */
+	static class Recorder {
+		private long[] latencies = new long[1 << 16];
+		private int count;
+		private final Map<Integer, Integer> statuses = new TreeMap<>();
+		private int failed;
+
+		private void record(long nanos, int status) {
+			if (count == latencies.length) {
+				latencies = Arrays.copyOf(latencies, count * 2);
+			}
+			latencies[count++] = nanos;
+			statuses.merge(status, 1, Integer::sum);
+		}
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param url URL template, {id} is replaced by an enterprise number
+	 * @param dataset generated contractors
+	 * @param keys number of distinct IDs to request
+	 * @param interval interval between requests of one thread in nanoseconds, 0 for closed loop
+	 */
+	public LoadGenerator(String url, Dataset dataset, int keys, long interval) {
+		this.client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+										.connectTimeout(Duration.ofSeconds(5)).build();
+		this.url = url;
+		this.dataset = dataset;
+		this.keys = keys;
+		this.interval = interval;
+	}
+
+	/**
+	 * Send requests until the deadline
+	 * 
+	 * @param until deadline (nano time)
+	 * @param offset delay of the first request, to spread threads in fixed rate mode
+	 * @return recorded latencies
+	 */
+	private Recorder run(long until, long offset) {
+		Recorder rec = new Recorder();
+		ThreadLocalRandom rnd = ThreadLocalRandom.current();
+		long next = System.nanoTime() + offset;
+
+		while (next < until) {
+			if (interval > 0) {
+				LockSupport.parkNanos(next - System.nanoTime());
+			}
+			long start = (interval > 0) ? next : System.nanoTime();
+			HttpRequest req = HttpRequest.newBuilder(URI.create(url.replace("{id}", dataset.id(rnd.nextInt(keys)))))
+										.timeout(Duration.ofSeconds(60)).build();
+			try {
+				HttpResponse<Void> resp = client.send(req, HttpResponse.BodyHandlers.discarding());
+				rec.record(System.nanoTime() - start, resp.statusCode());
+			} catch (Exception e) {
+				rec.failed++;
+			}
+			next = (interval > 0) ? next + interval : System.nanoTime();
+		}
+		return rec;
+	}
+
+	/**
+	 * Run a number of threads for some time
+	 * 
+	 * @param threads number of threads
+	 * @param duration duration
+	 * @return recorders of all threads
+	 * @throws InterruptedException 
+	 */
+	Recorder[] run(int threads, Duration duration) throws InterruptedException {
+		long until = System.nanoTime() + duration.toNanos();
+		Recorder[] recs = new Recorder[threads];
+		Thread[] workers = new Thread[threads];
+		for (int i = 0; i < threads; i++) {
+			int n = i;
+			workers[i] = new Thread(() -> recs[n] = run(until, interval * n / threads), "load-" + i);
+			workers[i].start();
+		}
+		for (Thread worker: workers) {
+			worker.join();
+		}
+		return recs;
+	}
+
+	/**
+	 * Print throughput, status codes and latency percentiles
+	 * 
+	 * @param recs recorders of all threads
+	 * @param duration duration of the run
+	 */
+	static void report(Recorder[] recs, Duration duration) {
+		int total = 0;
+		int failed = 0;
+		Map<Integer, Integer> statuses = new TreeMap<>();
+		for (Recorder rec: recs) {
+			total += rec.count;
+			failed += rec.failed;
+			rec.statuses.forEach((k, v) -> statuses.merge(k, v, Integer::sum));
+		}
+
+		long[] all = new long[total];
+		int pos = 0;
+		for (Recorder rec: recs) {
+			System.arraycopy(rec.latencies, 0, all, pos, rec.count);
+			pos += rec.count;
+		}
+		Arrays.sort(all);
+
+		System.out.printf("requests   %d (%d failed), status %s%n", total, failed, statuses);
+		System.out.printf("throughput %.1f req/s%n", total * 1000.0 / duration.toMillis());
+		if (total > 0) {
+			System.out.printf("latency ms p50 %.2f  p90 %.2f  p99 %.2f  p999 %.2f  max %.2f%n", 
+				percentile(all, 0.5), percentile(all, 0.9), percentile(all, 0.99), percentile(all, 0.999), 
+				all[total - 1] / 1e6);
+		}
+	}
+
+	/**
+	 * Get percentile from sorted latencies
+	 * 
+	 * @param sorted latencies in nanoseconds
+	 * @param p percentile (0 - 1)
+	 * @return latency in milliseconds
+	 */
+	private static double percentile(long[] sorted, double p) {
+		int idx = (int) Math.ceil(p * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(idx, sorted.length - 1))] / 1e6;
+	}
+
+	public static void main(String[] argv) throws Exception {
+		Args args = new Args(argv);
+		Dataset dataset = new Dataset(args.getInt("contractors", 100_000), args.getLong("seed", 42));
+		int threads = args.getInt("threads", 16);
+		double rate = args.getDouble("rate", 0);
+		Duration warmup = Duration.ofSeconds(args.getLong("warmup", 10));
+		Duration duration = Duration.ofSeconds(args.getLong("duration", 60));
+
+		LoadGenerator gen = new LoadGenerator(args.get("url", "http://localhost:8080/contractor/{id}"), dataset,
+								Math.min(args.getInt("keys", dataset.size()), dataset.size()),
+								(rate > 0) ? (long) (threads * 1e9 / rate) : 0);
+
+		if (!warmup.isZero()) {
+			System.out.printf("Warming up for %ds%n", warmup.toSeconds());
+			gen.run(threads, warmup);
+		}
+		System.out.printf("Running %d threads for %ds%s%n", threads, duration.toSeconds(),
+							(rate > 0) ? String.format(" at %.0f req/s", rate) : "");
+		report(gen.run(threads, duration), duration);
+	}
+}
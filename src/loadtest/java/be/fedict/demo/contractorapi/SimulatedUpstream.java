@@ -0,0 +1,330 @@
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi;
+
+import com.github.tomakehurst.wiremock.client.ResponseDefinitionBuilder;
+import com.github.tomakehurst.wiremock.common.FileSource;
+import com.github.tomakehurst.wiremock.extension.Parameters;
+import com.github.tomakehurst.wiremock.extension.ResponseDefinitionTransformer;
+import com.github.tomakehurst.wiremock.http.Request;
+import com.github.tomakehurst.wiremock.http.RequestMethod;
+import com.github.tomakehurst.wiremock.http.ResponseDefinition;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+
+/**
+ * Generates webform responses from a dataset, with log-normal latency, occasional slow responses, 
+ * server errors and expiring sessions.
+ * 
+ * @author Bart Hanssens
+ */
+public class SimulatedUpstream extends ResponseDefinitionTransformer {
+	public static final String NAME = "simulated-upstream";
+
+	// form fields for the filters, configure these as contractorapi.search.field.* in the API
+	public static final String POSTAL_CODE_FIELD = "mainForm:postalCode";
+	public static final String CATEGORY_FIELD = "mainForm:category";
+	public static final String NAME_FIELD = "mainForm:name";
+
+	private static final String FORM = "<html><body><form>"
+		+ "<input name='javax.faces.ViewState' value=\"%s\"/>"
+		+ "</form></body></html>";
+
+	private static final String START = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+		+ "<partial-response><changes><update id=\"mainForm:dataTab\"><![CDATA[";
+	private static final String HEAD = "<table><thead id=\"mainForm:dataTab_head\"><tr>"
+		+ "<th><span class='ui-column-title'>KBO nummer</span></th>"
+		+ "<th><span class='ui-column-title'>BTW nummer</span></th>"
+		+ "<th><span class='ui-column-title'>aannemer</span></th>"
+		+ "<th><span class='ui-column-title'>Erkenningsnummer</span></th>"
+		+ "<th><span class='ui-column-title'>straat</span></th>"
+		+ "<th><span class='ui-column-title'>Postcode</span></th>"
+		+ "<th><span class='ui-column-title'>Gemeente</span></th>"
+		+ "<th><span class='ui-column-title'>Beslissingsdatum</span></th>"
+		+ "<th><span class='ui-column-title'>vervaldatum</span></th>"
+		+ "<th><span class='ui-column-title'>categorie klassen</span></th>"
+		+ "</tr></thead><tbody id=\"mainForm:dataTab_data\">";
+	private static final String NOT_FOUND = "<tr><td colspan=\"10\">No records found</td></tr>";
+	private static final String TAIL = "</tbody></table>";
+	private static final String END = "]]></update></changes></partial-response>";
+
+	private static final String EXPIRED = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+		+ "<partial-response><error>"
+		+ "<error-name>javax.faces.application.ViewExpiredException</error-name>"
+		+ "<error-message><![CDATA[viewId:/weblists/dataDisplay.xhtml - View could not be restored.]]>"
+		+ "</error-message></error></partial-response>";
+
+	private final Dataset dataset;
+	private final double median;
+	private final double sigma;
+	private final double slow;
+	private final double slowFactor;
+	private final double errors;
+	private final long sessionTtl;
+	private final int sessionRequests;
+	private final int rows;
+
+	private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+	private final AtomicLong expired = new AtomicLong();
+
+	/**
+	 * Webform session, identified by its view state
+	 */
+	private static class Session {
+		private final long created = System.nanoTime();
+		private final AtomicInteger requests = new AtomicInteger();
+		// rows matching the filters of the last search, used for pagination (null for all rows)
+		private volatile int[] matches;
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param dataset generated contractors
+	 * @param median median latency in milliseconds
+	 * @param sigma standard deviation of the log-normal latency
+	 * @param slow fraction of slow responses
+	 * @param slowFactor latency multiplier for slow responses
+	 * @param errors fraction of responses with a server error
+	 * @param sessionTtl maximum age of a session
+	 * @param sessionRequests maximum number of requests per session
+	 * @param rows number of rows on the first page of search results
+	 */
+	public SimulatedUpstream(Dataset dataset, double median, double sigma, double slow, double slowFactor, 
+						double errors, Duration sessionTtl, int sessionRequests, int rows) {
+		this.dataset = dataset;
+		this.median = median;
+		this.sigma = sigma;
+		this.slow = slow;
+		this.slowFactor = slowFactor;
+		this.errors = errors;
+		this.sessionTtl = sessionTtl.toNanos();
+		this.sessionRequests = sessionRequests;
+		this.rows = rows;
+	}
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public boolean applyGlobally() {
+		return false;
+	}
+
+	public long getRequests() {
+		return requests.get();
+	}
+
+	public long getFailed() {
+		return failed.get();
+	}
+
+	public long getExpired() {
+		return expired.get();
+	}
+
+	/**
+	 * Random latency, log-normal distributed with occasional slow outliers
+	 * 
+	 * @return delay in milliseconds
+	 */
+	private int delay() {
+		ThreadLocalRandom rnd = ThreadLocalRandom.current();
+		double ms = median * Math.exp(sigma * rnd.nextGaussian());
+		if (rnd.nextDouble() < slow) {
+			ms *= slowFactor;
+		}
+		return (int) Math.min(ms, 60_000);
+	}
+
+	/**
+	 * Decode url-encoded form parameters
+	 * 
+	 * @param body request body
+	 * @return map of parameters
+	 */
+	private static Map<String, String> formParams(String body) {
+		Map<String, String> params = new HashMap<>();
+		for (String pair: body.split("&")) {
+			int pos = pair.indexOf('=');
+			if (pos > 0) {
+				params.put(URLDecoder.decode(pair.substring(0, pos), StandardCharsets.UTF_8),
+							URLDecoder.decode(pair.substring(pos + 1), StandardCharsets.UTF_8));
+			}
+		}
+		return params;
+	}
+
+	/**
+	 * Get a session if it is still valid, and remove it when it expired
+	 * 
+	 * @param viewState view state
+	 * @return session or null if not valid
+	 */
+	private Session valid(String viewState) {
+		Session session = (viewState != null) ? sessions.get(viewState) : null;
+		if (session == null) {
+			return null;
+		}
+		if (System.nanoTime() - session.created > sessionTtl 
+				|| session.requests.incrementAndGet() > sessionRequests) {
+			sessions.remove(viewState);
+			return null;
+		}
+		return session;
+	}
+
+	/**
+	 * Create a new session, removing the expired ones once in a while
+	 * 
+	 * @return view state
+	 */
+	private String newSession() {
+		if (sessions.size() > 10_000) {
+			long now = System.nanoTime();
+			sessions.values().removeIf(s -> now - s.created > sessionTtl);
+		}
+		String viewState = UUID.randomUUID().toString();
+		sessions.put(viewState, new Session());
+		return viewState;
+	}
+
+	/**
+	 * Render rows of the dataset
+	 * 
+	 * @param buf buffer
+	 * @param matches indexes of the matching rows, or null for all rows
+	 * @param first index of the first row
+	 * @param count maximum number of rows
+	 */
+	private void appendRows(StringBuilder buf, int[] matches, int first, int count) {
+		int size = (matches != null) ? matches.length : dataset.size();
+		int last = Math.min(size, first + count);
+		for (int i = Math.max(first, 0); i < last; i++) {
+			buf.append(dataset.row((matches != null) ? matches[i] : i));
+		}
+	}
+
+	/**
+	 * Get the rows matching the filters
+	 * 
+	 * @param params form parameters
+	 * @return indexes of the matching rows, or null when there are no filters
+	 */
+	private int[] filter(Map<String, String> params) {
+		String postalCode = emptyToNull(params.get(POSTAL_CODE_FIELD));
+		String category = emptyToNull(params.get(CATEGORY_FIELD));
+		String name = emptyToNull(params.get(NAME_FIELD));
+		if (postalCode == null && category == null && name == null) {
+			return null;
+		}
+		return IntStream.range(0, dataset.size())
+						.filter(n -> dataset.matches(n, postalCode, category, name))
+						.toArray();
+	}
+
+	private static String emptyToNull(String str) {
+		return (str == null || str.trim().isEmpty()) ? null : str.trim();
+	}
+
+	/**
+	 * Answer a search or pagination request
+	 * 
+	 * @param session session
+	 * @param params form parameters
+	 * @return XML partial response
+	 */
+	private String search(Session session, Map<String, String> params) {
+		StringBuilder buf = new StringBuilder(START);
+		if (Boolean.parseBoolean(params.get("mainForm:dataTab_pagination"))) {
+			// following pages only contain rows
+			appendRows(buf, session.matches, 
+							Integer.parseInt(params.getOrDefault("mainForm:dataTab_first", "0")),
+							Integer.parseInt(params.getOrDefault("mainForm:dataTab_rows", "10")));
+			return buf.append(END).toString();
+		}
+
+		buf.append(HEAD);
+		String id = params.getOrDefault("mainForm:crit1465:crit767", "");
+		if (id.isEmpty()) {
+			session.matches = filter(params);
+			if (session.matches != null && session.matches.length == 0) {
+				buf.append(NOT_FOUND);
+			} else {
+				appendRows(buf, session.matches, 0, rows);
+			}
+		} else {
+			int n = dataset.indexOf(id);
+			buf.append(n >= 0 ? dataset.row(n) : NOT_FOUND);
+		}
+		return buf.append(TAIL).append(END).toString();
+	}
+
+	@Override
+	public ResponseDefinition transform(Request request, ResponseDefinition def, FileSource files, Parameters params) {
+		requests.incrementAndGet();
+		ResponseDefinitionBuilder builder = new ResponseDefinitionBuilder().withFixedDelay(delay());
+
+		if (ThreadLocalRandom.current().nextDouble() < errors) {
+			failed.incrementAndGet();
+			return builder.withStatus(500).withHeader(HttpHeaders.CONTENT_TYPE, MediaType.TEXT_HTML)
+							.withBody("<html><body>Internal Server Error</body></html>").build();
+		}
+
+		if (request.getMethod().equals(RequestMethod.GET)) {
+			String viewState = newSession();
+			return builder.withStatus(200).withHeader(HttpHeaders.CONTENT_TYPE, MediaType.TEXT_HTML)
+							.withHeader(HttpHeaders.SET_COOKIE, "JSESSIONID=" + viewState + "; MY_SESSION=sim")
+							.withBody(String.format(FORM, viewState)).build();
+		}
+
+		Map<String, String> form = formParams(request.getBodyAsString());
+		builder.withStatus(200).withHeader(HttpHeaders.CONTENT_TYPE, MediaType.TEXT_XML);
+		Session session = valid(form.get("javax.faces.ViewState"));
+		if (session == null) {
+			expired.incrementAndGet();
+			return builder.withBody(EXPIRED).build();
+		}
+		return builder.withBody(search(session, form)).build();
+	}
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.any;
+import static com.github.tomakehurst.wiremock.client.WireMock.recordSpec;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
+import com.github.tomakehurst.wiremock.global.GlobalSettings;
+import com.github.tomakehurst.wiremock.http.LogNormal;
+import com.github.tomakehurst.wiremock.recording.SnapshotRecordResult;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+/**
+ * Local stand-in for the upstream webform, for load tests without network.
+ * 
+ * Modes:
+ * <ul>
+ * <li>simulate (default): generated dataset with configurable latency, errors and session expiry</li>
+ * <li>record: proxy to the real webform and save the exchanges to disk</li>
+ * <li>replay: serve previously recorded exchanges, with optional log-normal latency</li>
+ * </ul>
+ * 
+ * Point the API to the simulator with -Dbe.fedict.demo.contractorapi.Search/mp-rest/url=http://localhost:8089
+ * 
+ * @author Bart Hanssens
+ */
+public class UpstreamSimulator {
+	private static final String PATH = "/weblists/dataDisplay.xhtml";
+
+	/**
+	 * Create directories for recorded mappings and response bodies
+	 * 
+	 * @param dir root directory
+	 * @throws IOException 
+	 */
+	private static void createDirs(Path dir) throws IOException {
+		Files.createDirectories(dir.resolve("mappings"));
+		Files.createDirectories(dir.resolve("__files"));
+	}
+
+	public static void main(String[] argv) throws Exception {
+		Args args = new Args(argv);
+		String mode = args.get("mode", "simulate");
+		Path dir = Paths.get(args.get("dir", "target/recordings"));
+		double median = args.getDouble("median", 150);
+		double sigma = args.getDouble("sigma", 0.5);
+
+		WireMockConfiguration config = options().port(args.getInt("port", 8089))
+									.containerThreads(args.getInt("threads", 200))
+									.asynchronousResponseEnabled(true)
+									.asynchronousResponseThreads(args.getInt("threads", 200));
+		WireMockServer server;
+		Runnable report = () -> {};
+
+		switch (mode) {
+			case "simulate":
+				Dataset dataset = new Dataset(args.getInt("contractors", 100_000), args.getLong("seed", 42));
+				SimulatedUpstream upstream = new SimulatedUpstream(dataset, median, sigma,
+					args.getDouble("slow", 0.01), args.getDouble("slow-factor", 10), args.getDouble("errors", 0),
+					Duration.ofSeconds(args.getLong("session-ttl", 600)), args.getInt("session-requests", 1000),
+					args.getInt("rows", 10));
+				server = new WireMockServer(config.extensions(upstream));
+				server.stubFor(any(urlPathEqualTo(PATH))
+								.willReturn(aResponse().withTransformers(SimulatedUpstream.NAME)));
+				report = () -> System.out.printf("%d requests, %d errors, %d expired sessions%n", 
+								upstream.getRequests(), upstream.getFailed(), upstream.getExpired());
+				System.out.printf("Simulating %d contractors (first %s, last %s)%n", 
+									dataset.size(), dataset.id(0), dataset.id(dataset.size() - 1));
+				break;
+			case "record":
+				createDirs(dir);
+				server = new WireMockServer(config.usingFilesUnderDirectory(dir.toString()));
+				server.startRecording(recordSpec()
+										.forTarget(args.get("target", "https://weblists.economie.fgov.be"))
+										.captureHeader("Faces-Request")
+										.matchRequestBodyWithEqualTo()
+										.makeStubsPersistent(true)
+										.extractTextBodiesOver(0));
+				WireMockServer recorder = server;
+				report = () -> {
+					try {
+						SnapshotRecordResult result = recorder.stopRecording();
+						System.out.printf("Recorded %d exchanges in %s%n", result.getStubMappings().size(), dir);
+					} catch (RuntimeException e) {
+						// e.g. exchanges without response when the target could not be reached
+						System.err.printf("Could not save recording: %s%n", e.getMessage());
+					}
+				};
+				break;
+			case "replay":
+				createDirs(dir);
+				server = new WireMockServer(config.usingFilesUnderDirectory(dir.toString()));
+				if (median > 0) {
+					server.updateGlobalSettings(GlobalSettings.builder()
+												.delayDistribution(new LogNormal(median, sigma)).build());
+				}
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown mode " + mode);
+		}
+
+		server.start();
+		System.out.printf("Upstream %s mode on %s, press Ctrl-C to stop%n", mode, server.baseUrl());
+
+		// report (and save recordings) before the server stops
+		WireMockServer running = server;
+		Runnable onStop = report;
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			onStop.run();
+			running.stop();
+		}));
+		Thread.currentThread().join();
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.inject.Inject;
+
+import javax.ws.rs.DELETE;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.eclipse.microprofile.openapi.annotations.Operation;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponses;
+
+/**
+ * Administrative tasks
+ * 
+ * @author Bart Hanssens
+ */
+@Path("/admin")
+@Produces(MediaType.APPLICATION_JSON)
+public class AdminResource {
+	@Inject
+	ContractorCache cache;
+
+	@Inject
+	ContractorMirror mirror;
+
+	@Inject
+	ContractorLookup lookup;
+
+	@GET
+	@Path("/cache")
+	@Operation(summary = "Cache statistics", description = "Get number of cache hits, misses and evictions")
+	public Map<String, Long> getCacheStats() {
+		return cache.stats();
+	}
+
+	@DELETE
+	@Path("/cache")
+	@Operation(summary = "Clear cache", description = "Remove all contractors from the cache")
+	public void invalidateAll() {
+		cache.invalidateAll();
+	}
+
+	@DELETE
+	@Path("/cache/{id}")
+	@Operation(summary = "Remove from cache", description = "Remove one contractor from the cache")
+	public void invalidate(@PathParam("id") String str) {
+		cache.invalidate(ContractorResource.normalize(str));
+	}
+
+	@GET
+	@Path("/http")
+	@Operation(summary = "HTTP client statistics", 
+		description = "Get number of leased, idle and pending connections to upstream, and number of leases and new connections")
+	public Map<String, Long> getHttpStats() {
+		return UpstreamHttpClient.stats();
+	}
+
+	@POST
+	@Path("/load")
+	@Operation(summary = "Load contractors", 
+		description = "Retrieve all contractors matching the criteria from the webform, and store them in the mirror or the cache")
+	@APIResponses(value = {
+		@APIResponse(responseCode = "200", description = "Success"),
+		@APIResponse(responseCode = "400", description = "No or unsupported criteria")
+	})
+	public Map<String, Integer> load(@QueryParam("postalCode") String postalCode,
+									@QueryParam("category") String category, 
+									@QueryParam("name") String name) {
+		try {
+			return Collections.singletonMap("contractors", lookup.load(postalCode, category, name));
+		} catch (IllegalArgumentException iae) {
+			throw new WebApplicationException(iae.getMessage(), Response.Status.BAD_REQUEST);
+		}
+	}
+
+	@GET
+	@Path("/mirror")
+	@Operation(summary = "Mirror status", description = "Get number of contractors in the mirror and time of last refresh")
+	public Map<String, Object> getMirrorStatus() {
+		Map<String, Object> map = new LinkedHashMap<>();
+		map.put("enabled", mirror.isEnabled());
+		map.put("size", mirror.size());
+		map.put("lastRefresh", mirror.getLastRefresh());
+		return map;
+	}
+}
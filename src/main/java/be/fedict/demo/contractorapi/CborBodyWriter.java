@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi;
+
+import be.fedict.demo.contractorapi.helper.BatchResultDAO;
+import be.fedict.demo.contractorapi.helper.CborEncoder;
+import be.fedict.demo.contractorapi.helper.ContractorDAO;
+import be.fedict.demo.contractorapi.helper.PageDAO;
+import be.fedict.demo.contractorapi.helper.StaleContractorDAO;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.Map;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Writes contractors as CBOR, using the same field names and structure as the JSON representation.
+ * Dates are written as number of days since the epoch (tag 100), see contractor.cddl for the schema.
+ * 
+ * @author Bart Hanssens
+ */
+@Provider
+@Produces(CborBodyWriter.APPLICATION_CBOR)
+public class CborBodyWriter implements MessageBodyWriter<Object> {
+	public static final String APPLICATION_CBOR = "application/cbor";
+	public static final MediaType APPLICATION_CBOR_TYPE = new MediaType("application", "cbor");
+
+	/**
+	 * Check if a class can be written
+	 * 
+	 * @param type class
+	 * @return true if supported
+	 */
+	private static boolean isSupported(Type type) {
+		return (type instanceof Class) && (ContractorDAO.class.isAssignableFrom((Class) type) 
+					|| PageDAO.class.equals(type) || BatchResultDAO.class.equals(type));
+	}
+
+	@Override
+	public boolean isWriteable(Class<?> type, Type genericType, Annotation[] antns, MediaType mt) {
+		if (isSupported(type)) {
+			return true;
+		}
+		if (!Collection.class.isAssignableFrom(type) || !(genericType instanceof ParameterizedType)) {
+			return false;
+		}
+		Type[] args = ((ParameterizedType) genericType).getActualTypeArguments();
+		return args.length == 1 && isSupported(args[0]);
+	}
+
+	@Override
+	public void writeTo(Object obj, Class<?> type, Type genericType, Annotation[] antns, MediaType mt, 
+					MultivaluedMap<String, Object> headers, OutputStream out) 
+					throws IOException, WebApplicationException {
+		CborEncoder enc = new CborEncoder(out);
+		write(enc, obj);
+		enc.flush();
+	}
+
+	/**
+	 * Write a supported object or a collection of supported objects
+	 * 
+	 * @param enc encoder
+	 * @param obj object
+	 * @throws IOException 
+	 */
+	static void write(CborEncoder enc, Object obj) throws IOException {
+		if (obj instanceof ContractorDAO) {
+			writeContractor(enc, (ContractorDAO) obj);
+		} else if (obj instanceof PageDAO) {
+			writePage(enc, (PageDAO) obj);
+		} else if (obj instanceof BatchResultDAO) {
+			writeBatchResult(enc, (BatchResultDAO) obj);
+		} else if (obj instanceof Collection) {
+			Collection<?> coll = (Collection<?>) obj;
+			enc.writeArray(coll.size());
+			for (Object o: coll) {
+				write(enc, o);
+			}
+		} else {
+			enc.writeNull();
+		}
+	}
+
+	private static int count(Object... vals) {
+		int n = 0;
+		for (Object val: vals) {
+			if (val != null) {
+				n++;
+			}
+		}
+		return n;
+	}
+
+	private static void writeField(CborEncoder enc, String key, String val) throws IOException {
+		if (val != null) {
+			enc.writeString(key).writeString(val);
+		}
+	}
+
+	/**
+	 * Write a contractor, leaving out null values like the JSON representation
+	 * 
+	 * @param enc encoder
+	 * @param c contractor
+	 * @throws IOException 
+	 */
+	private static void writeContractor(CborEncoder enc, ContractorDAO c) throws IOException {
+		boolean stale = c instanceof StaleContractorDAO;
+		int size = 1 + count(c.getCbeId(), c.getVatId(), c.getName(), c.getLicenseNo(), c.getStreet(),
+						c.getPostalCode(), c.getMunicipality(), c.getFromDate(), c.getTillDate());
+		enc.writeMap(stale ? size + 2 : size);
+
+		Map<String, String> catClasses = c.getCatClasses();
+		enc.writeString("catClasses").writeMap(catClasses.size());
+		for (Map.Entry<String, String> e: catClasses.entrySet()) {
+			enc.writeString(e.getKey()).writeString(e.getValue());
+		}
+		writeField(enc, "cbeId", c.getCbeId());
+		if (c.getFromDate() != null) {
+			enc.writeString("fromDate").writeDate(c.getFromDate());
+		}
+		writeField(enc, "licenseNo", c.getLicenseNo());
+		writeField(enc, "municipality", c.getMunicipality());
+		writeField(enc, "name", c.getName());
+		writeField(enc, "postalCode", c.getPostalCode());
+		writeField(enc, "street", c.getStreet());
+		if (c.getTillDate() != null) {
+			enc.writeString("tillDate").writeDate(c.getTillDate());
+		}
+		writeField(enc, "vatId", c.getVatId());
+		if (stale) {
+			enc.writeString("age").writeInt(((StaleContractorDAO) c).getAge());
+			enc.writeString("stale").writeBoolean(true);
+		}
+	}
+
+	private static void writePage(CborEncoder enc, PageDAO page) throws IOException {
+		enc.writeMap(count(page.getContractors(), page.getNext()));
+		if (page.getContractors() != null) {
+			enc.writeString("contractors");
+			write(enc, page.getContractors());
+		}
+		writeField(enc, "next", page.getNext());
+	}
+
+	private static void writeBatchResult(CborEncoder enc, BatchResultDAO res) throws IOException {
+		enc.writeMap(1 + count(res.getContractor(), res.getError(), res.getId()));
+		if (res.getContractor() != null) {
+			enc.writeString("contractor");
+			writeContractor(enc, res.getContractor());
+		}
+		writeField(enc, "error", res.getError());
+		writeField(enc, "id", res.getId());
+		enc.writeString("status").writeInt(res.getStatus());
+	}
+}
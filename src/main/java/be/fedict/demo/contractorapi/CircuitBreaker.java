@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi;
+
+import java.time.Duration;
+
+import javax.enterprise.context.ApplicationScoped;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.MetricUnits;
+import org.eclipse.microprofile.metrics.annotation.Gauge;
+
+/**
+ * Circuit breaker on the webform.
+ * 
+ * After a number of consecutive failures, requests are rejected without contacting the webform for some time.
+ * Then one request is let through: if it succeeds the circuit is closed again, otherwise it stays open.
+ * 
+ * @author Bart Hanssens
+ */
+@ApplicationScoped
+public class CircuitBreaker {
+	public enum State { CLOSED, OPEN, HALF_OPEN };
+
+	@ConfigProperty(name = "contractorapi.breaker.failures", defaultValue = "5")
+	int failures;
+
+	@ConfigProperty(name = "contractorapi.breaker.open", defaultValue = "PT30S")
+	Duration open;
+
+	private State state = State.CLOSED;
+	private int failed;
+	private long openedAt;
+	private boolean probing;
+
+	/**
+	 * Get the state of the circuit
+	 * 
+	 * @return state
+	 */
+	public synchronized State getState() {
+		if (state == State.OPEN && System.nanoTime() - openedAt >= open.toNanos()) {
+			state = State.HALF_OPEN;
+		}
+		return state;
+	}
+
+	@Gauge(name = "upstream.breaker.open", unit = MetricUnits.NONE, absolute = true,
+			description = "1 if requests to upstream are blocked by the circuit breaker, 0 otherwise")
+	public int isOpen() {
+		return (getState() == State.OPEN) ? 1 : 0;
+	}
+
+	/**
+	 * Check if a request is allowed.
+	 * When the circuit is half-open, only one request at a time is allowed.
+	 * 
+	 * @return true if allowed
+	 */
+	public synchronized boolean allow() {
+		switch (getState()) {
+			case CLOSED:
+				return true;
+			case HALF_OPEN:
+				if (!probing) {
+					probing = true;
+					return true;
+				}
+				return false;
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * Get the time until the circuit will be half-open
+	 * 
+	 * @return seconds, at least 1
+	 */
+	public synchronized long getRetryAfter() {
+		long left = open.toNanos() - (System.nanoTime() - openedAt);
+		return Math.max(1, Duration.ofNanos(left).toSeconds());
+	}
+
+	/**
+	 * Record the result of a request
+	 * 
+	 * @param success true if the request succeeded
+	 */
+	public synchronized void record(boolean success) {
+		probing = false;
+		if (success) {
+			failed = 0;
+			state = State.CLOSED;
+			return;
+		}
+		failed++;
+		if (state == State.HALF_OPEN || failed >= failures) {
+			state = State.OPEN;
+			openedAt = System.nanoTime();
+		}
+	}
+}
@@ -0,0 +1,292 @@
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi;
+
+import be.fedict.demo.contractorapi.helper.ContractorDAO;
+import be.fedict.demo.contractorapi.helper.Futures;
+import be.fedict.demo.contractorapi.helper.SingleFlight;
+import be.fedict.demo.contractorapi.helper.StaleContractorDAO;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.ws.rs.NotFoundException;
+import javax.ws.rs.ProcessingException;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * In-memory cache of contractors, keyed by the normalized enterprise ID.
+ * Contractors that were not found are cached as well, but for a shorter time.
+ * 
+ * The last known data of a contractor is kept longer, and returned (marked as stale) when the webform fails or 
+ * does not answer in time. The request to the webform continues in the background and refreshes the cache.
+ * 
+ * @author Bart Hanssens
+ */
+@ApplicationScoped
+public class ContractorCache {
+	@Inject
+	ContractorChanges changes;
+
+	@ConfigProperty(name = "contractorapi.cache.max-size", defaultValue = "10000")
+	long maxSize;
+
+	@ConfigProperty(name = "contractorapi.cache.ttl", defaultValue = "PT1H")
+	Duration ttl;
+
+	@ConfigProperty(name = "contractorapi.cache.negative-ttl", defaultValue = "PT5M")
+	Duration negativeTtl;
+
+	@ConfigProperty(name = "contractorapi.cache.stale-max-size", defaultValue = "100000")
+	long staleMaxSize;
+
+	@ConfigProperty(name = "contractorapi.cache.stale-max-age", defaultValue = "P7D")
+	Duration staleMaxAge;
+
+	@ConfigProperty(name = "contractorapi.cache.stale-timeout", defaultValue = "PT1S")
+	Duration staleTimeout;
+
+	// an empty optional means "not found"
+	private Cache<String, Optional<ContractorDAO>> cache;
+	private Cache<String, Known> lastKnown;
+	private final AtomicLong staleCount = new AtomicLong();
+
+	/**
+	 * Last known contractor data, time of retrieval and time the data was last changed
+	 */
+	private static final class Known {
+		private final ContractorDAO contractor;
+		private final Instant retrieved = Instant.now();
+		private final Instant modified;
+
+		private Known(ContractorDAO contractor, Known previous) {
+			this.contractor = contractor;
+			this.modified = (previous != null && previous.contractor.equals(contractor)) 
+								? previous.modified : retrieved;
+		}
+
+		private ContractorDAO stale() {
+			return new StaleContractorDAO(contractor, Duration.between(retrieved, Instant.now()).toSeconds());
+		}
+	}
+
+	private final SingleFlight<String, ContractorDAO> inFlight = new SingleFlight<>();
+
+	@PostConstruct
+	void init() {
+		cache = Caffeine.newBuilder()
+					.maximumSize(maxSize)
+					.expireAfter(new Expiry<String, Optional<ContractorDAO>>() {
+						@Override
+						public long expireAfterCreate(String id, Optional<ContractorDAO> val, long now) {
+							return val.isPresent() ? ttl.toNanos() : negativeTtl.toNanos();
+						}
+
+						@Override
+						public long expireAfterUpdate(String id, Optional<ContractorDAO> val, long now, long left) {
+							return expireAfterCreate(id, val, now);
+						}
+
+						@Override
+						public long expireAfterRead(String id, Optional<ContractorDAO> val, long now, long left) {
+							return left;
+						}
+					})
+					.recordStats()
+					.build();
+		lastKnown = Caffeine.newBuilder()
+					.maximumSize(staleMaxSize)
+					.expireAfterWrite(staleMaxAge)
+					.build();
+	}
+
+	/**
+	 * Return the result from the webform, or the last known data when the webform fails or is too slow.
+	 * "Not found" is returned as such.
+	 * 
+	 * @param fresh result from the webform
+	 * @param known last known data
+	 * @return contractor
+	 */
+	private CompletionStage<ContractorDAO> withStale(CompletionStage<ContractorDAO> fresh, Known known) {
+		CompletableFuture<ContractorDAO> result = new CompletableFuture<>();
+		fresh.whenComplete((contractor, t) -> {
+			if (t == null) {
+				result.complete(contractor);
+			} else if (Futures.isNotFound(t)) {
+				result.completeExceptionally(t);
+			} else {
+				completeStale(result, known);
+			}
+		});
+		if (!result.isDone()) {
+			CompletableFuture.delayedExecutor(staleTimeout.toNanos(), TimeUnit.NANOSECONDS)
+								.execute(() -> completeStale(result, known));
+		}
+		return result;
+	}
+
+	/**
+	 * Complete with last known data, unless the result is already available
+	 * 
+	 * @param result result
+	 * @param known last known data
+	 */
+	private void completeStale(CompletableFuture<ContractorDAO> result, Known known) {
+		// count first, so the statistics are up-to-date when the result is returned
+		staleCount.incrementAndGet();
+		if (!result.complete(known.stale())) {
+			staleCount.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Get contractor from the cache, or use the loader and cache the result (including "not found").
+	 * Concurrent requests for a contractor that is not in the cache share the same call to the loader.
+	 * 
+	 * @param id normalized enterprise ID
+	 * @param loader function to retrieve the contractor when it is not in the cache
+	 * @return contractor
+	 */
+	public CompletionStage<ContractorDAO> get(String id, Function<String, CompletionStage<ContractorDAO>> loader) {
+		Optional<ContractorDAO> cached = cache.getIfPresent(id);
+		if (cached != null) {
+			return cached.isPresent() 
+				? CompletableFuture.completedFuture(cached.get())
+				// same exception as the webform, so it is mapped to the same response
+				: CompletableFuture.failedFuture(new ProcessingException(new NotFoundException("Not found")));
+		}
+		Known known = lastKnown.getIfPresent(id);
+		CompletionStage<ContractorDAO> fresh = inFlight.run(id, k -> loader.apply(k).whenComplete((contractor, t) -> {
+			if (t == null && contractor instanceof StaleContractorDAO) {
+				// stale data from the peer owning the ID, ask again next time
+				return;
+			}
+			if (t == null) {
+				put(k, contractor);
+			} else if (Futures.isNotFound(t)) {
+				cache.put(k, Optional.empty());
+				lastKnown.invalidate(k);
+			}
+		}));
+		return (known == null) ? fresh : withStale(fresh, known);
+	}
+
+	/**
+	 * Add or replace a contractor, e.g. retrieved in bulk, and keep track of the changes.
+	 * This does not wait for lookups of the same contractor in progress.
+	 * 
+	 * @param id normalized enterprise ID
+	 * @param contractor contractor
+	 */
+	public void put(String id, ContractorDAO contractor) {
+		cache.put(id, Optional.of(contractor));
+		// a lookup may store the same contractor at the same time
+		lastKnown.asMap().compute(id, (k, previous) -> {
+			changes.record((previous != null) ? previous.contractor : null, contractor);
+			return new Known(contractor, previous);
+		});
+	}
+
+	/**
+	 * Retrieve a contractor again using the loader, even if it is in the cache
+	 * 
+	 * @param id normalized enterprise ID
+	 * @param loader function to retrieve the contractor
+	 * @return contractor
+	 */
+	public CompletionStage<ContractorDAO> refresh(String id, Function<String, CompletionStage<ContractorDAO>> loader) {
+		// keep the last known data, in case the webform fails
+		cache.invalidate(id);
+		return get(id, loader);
+	}
+
+	/**
+	 * Get the contractors retrieved from the webform (within the maximum age for stale data), 
+	 * optionally only the ones that changed since a given time
+	 * 
+	 * @param since time or null for all contractors
+	 * @return stream of contractors
+	 */
+	public Stream<ContractorDAO> known(Instant since) {
+		return lastKnown.asMap().values().stream()
+						.filter(k -> since == null || !k.modified.isBefore(since))
+						.map(k -> k.contractor);
+	}
+
+	/**
+	 * Remove one contractor from the cache
+	 * 
+	 * @param id normalized enterprise ID
+	 */
+	public void invalidate(String id) {
+		cache.invalidate(id);
+		lastKnown.invalidate(id);
+	}
+
+	/**
+	 * Remove all contractors from the cache
+	 */
+	public void invalidateAll() {
+		cache.invalidateAll();
+		lastKnown.invalidateAll();
+	}
+
+	/**
+	 * Get cache statistics
+	 * 
+	 * @return map with number of hits, misses, evictions, (estimated) size, lookups in progress and stale results
+	 */
+	public Map<String, Long> stats() {
+		CacheStats stats = cache.stats();
+		Map<String, Long> map = new LinkedHashMap<>();
+		map.put("hits", stats.hitCount());
+		map.put("misses", stats.missCount());
+		map.put("evictions", stats.evictionCount());
+		map.put("size", cache.estimatedSize());
+		map.put("inFlight", (long) inFlight.size());
+		map.put("stale", staleCount.get());
+		return map;
+	}
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi;
+
+import be.fedict.demo.contractorapi.helper.CatClasses;
+import be.fedict.demo.contractorapi.helper.ChangeDAO;
+import be.fedict.demo.contractorapi.helper.ContractorDAO;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.sse.OutboundSseEvent;
+import javax.ws.rs.sse.Sse;
+import javax.ws.rs.sse.SseEventSink;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+/**
+ * Feed of changes in contractor data, detected by comparing freshly retrieved data with the last known version.
+ * 
+ * The most recent changes are kept in a ring buffer, so clients can resume from the sequence number 
+ * of the last change they received.
+ * Changes are sent to subscribers by a single thread, so retrieving contractors is not slowed down 
+ * and every subscriber receives the changes in order.
+ * 
+ * @author Bart Hanssens
+ */
+@ApplicationScoped
+public class ContractorChanges {
+	private static final Logger LOG = Logger.getLogger(ContractorChanges.class);
+
+	@ConfigProperty(name = "contractorapi.changes.max-size", defaultValue = "10000")
+	int maxSize;
+
+	private ChangeDAO[] buffer;
+	// sequence number of the next change, guarded by this
+	private long next = 1;
+
+	private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+	private ExecutorService executor;
+
+	/**
+	 * Event stream of a client, only used by the executor thread
+	 */
+	private static class Subscriber {
+		private final SseEventSink sink;
+		private final Sse sse;
+		private long cursor;
+
+		private Subscriber(SseEventSink sink, Sse sse, long cursor) {
+			this.sink = sink;
+			this.sse = sse;
+			this.cursor = cursor;
+		}
+	}
+
+	@PostConstruct
+	void init() {
+		buffer = new ChangeDAO[maxSize];
+		executor = Executors.newSingleThreadExecutor(r -> {
+			Thread t = new Thread(r, "contractor-changes");
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	@PreDestroy
+	void close() {
+		executor.shutdownNow();
+		subscribers.forEach(s -> s.sink.close());
+	}
+
+	private static String format(LocalDate date) {
+		return (date != null) ? date.toString() : null;
+	}
+
+	private static String format(short[] catClasses) {
+		return CatClasses.toMap(catClasses).entrySet().stream()
+						.map(e -> e.getKey() + " (" + e.getValue() + ")")
+						.collect(Collectors.joining(" "));
+	}
+
+	private static void compare(Map<String, String> before, Map<String, String> after, String field, 
+								String oldVal, String newVal) {
+		if (!Objects.equals(oldVal, newVal)) {
+			before.put(field, oldVal);
+			after.put(field, newVal);
+		}
+	}
+
+	/**
+	 * Compare two versions of a contractor
+	 * 
+	 * @param old last known version
+	 * @param fresh new version
+	 * @return change or null when there are no differences
+	 */
+	static ChangeDAO diff(ContractorDAO old, ContractorDAO fresh) {
+		Map<String, String> before = new LinkedHashMap<>();
+		Map<String, String> after = new LinkedHashMap<>();
+		compare(before, after, "vatId", old.getVatId(), fresh.getVatId());
+		compare(before, after, "name", old.getName(), fresh.getName());
+		compare(before, after, "licenseNo", old.getLicenseNo(), fresh.getLicenseNo());
+		compare(before, after, "street", old.getStreet(), fresh.getStreet());
+		compare(before, after, "postalCode", old.getPostalCode(), fresh.getPostalCode());
+		compare(before, after, "municipality", old.getMunicipality(), fresh.getMunicipality());
+		compare(before, after, "fromDate", format(old.getFromDate()), format(fresh.getFromDate()));
+		compare(before, after, "tillDate", format(old.getTillDate()), format(fresh.getTillDate()));
+		compare(before, after, "catClasses", format(old.getCatClassCodes()), format(fresh.getCatClassCodes()));
+		if (before.isEmpty()) {
+			return null;
+		}
+		ChangeDAO change = new ChangeDAO();
+		change.setCbeId(fresh.getCbeId());
+		change.setTime(Instant.now());
+		change.setBefore(before);
+		change.setAfter(after);
+		return change;
+	}
+
+	/**
+	 * Record the change (if any) between the last known and the freshly retrieved version of a contractor
+	 * 
+	 * @param old last known version or null
+	 * @param fresh freshly retrieved version
+	 */
+	public void record(ContractorDAO old, ContractorDAO fresh) {
+		if (old == null || old.equals(fresh)) {
+			return;
+		}
+		ChangeDAO change = diff(old, fresh);
+		if (change == null) {
+			return;
+		}
+		synchronized (this) {
+			change.setId(next);
+			buffer[(int) (next % maxSize)] = change;
+			next++;
+		}
+		if (!subscribers.isEmpty()) {
+			executor.execute(() -> subscribers.forEach(this::deliver));
+		}
+	}
+
+	/**
+	 * Get the sequence number of the most recent change
+	 * 
+	 * @return sequence number or 0 when there are no changes yet
+	 */
+	public synchronized long getLatest() {
+		return next - 1;
+	}
+
+	/**
+	 * Get the changes after a given sequence number, as far as they are still available
+	 * 
+	 * @param cursor sequence number
+	 * @return list of changes, oldest first
+	 */
+	public synchronized List<ChangeDAO> since(long cursor) {
+		long from = Math.max(Math.max(cursor + 1, next - maxSize), 1);
+		List<ChangeDAO> changes = new ArrayList<>((int) Math.max(next - from, 0));
+		for (long i = from; i < next; i++) {
+			changes.add(buffer[(int) (i % maxSize)]);
+		}
+		return changes;
+	}
+
+	/**
+	 * Send the changes after a sequence number, and any following change, to an event stream.
+	 * 
+	 * @param sink event stream
+	 * @param sse event builder factory
+	 * @param cursor sequence number of the last change the client received
+	 */
+	public void subscribe(SseEventSink sink, Sse sse, long cursor) {
+		Subscriber subscriber = new Subscriber(sink, sse, cursor);
+		subscribers.add(subscriber);
+		executor.execute(() -> deliver(subscriber));
+	}
+
+	/**
+	 * Tell the subscriber that changes were missed, and continue from another sequence number
+	 * 
+	 * @param s subscriber
+	 * @param cursor new sequence number
+	 */
+	private static void reset(Subscriber s, long cursor) {
+		s.sink.send(s.sse.newEventBuilder().name("reset").id(String.valueOf(cursor))
+										.data("Changes after " + s.cursor + " not available").build());
+		s.cursor = cursor;
+	}
+
+	/**
+	 * Send all changes the subscriber did not receive yet
+	 * 
+	 * @param s subscriber
+	 */
+	private void deliver(Subscriber s) {
+		if (s.sink.isClosed()) {
+			subscribers.remove(s);
+			return;
+		}
+		List<ChangeDAO> changes = since(s.cursor);
+		long latest = getLatest();
+		try {
+			// client has to catch up another way, e.g. by exporting recently modified contractors
+			if (!changes.isEmpty() && changes.get(0).getId() > s.cursor + 1) {
+				reset(s, changes.get(0).getId() - 1);
+			} else if (s.cursor > latest) {
+				// sequence numbers restart when the service restarts
+				reset(s, latest);
+			}
+			for (ChangeDAO change: changes) {
+				OutboundSseEvent event = s.sse.newEventBuilder().name("change").id(String.valueOf(change.getId()))
+												.mediaType(MediaType.APPLICATION_JSON_TYPE)
+												.data(ChangeDAO.class, change).build();
+				s.sink.send(event);
+				s.cursor = change.getId();
+			}
+		} catch (RuntimeException e) {
+			LOG.debugf("Could not send change: %s", e.getMessage());
+			subscribers.remove(s);
+			s.sink.close();
+		}
+	}
+}
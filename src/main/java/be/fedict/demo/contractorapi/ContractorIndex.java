@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi;
+
+import be.fedict.demo.contractorapi.helper.ContractorDAO;
+import be.fedict.demo.contractorapi.helper.PageDAO;
+import be.fedict.demo.contractorapi.helper.QueryDAO;
+import be.fedict.demo.contractorapi.helper.StaleContractorDAO;
+
+import io.quarkus.scheduler.Scheduled;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import org.jboss.logging.Logger;
+
+/**
+ * Search indexes on the contractors in the mirror, for criteria and names.
+ * The indexes are rebuilt in the background when the contents of the mirror changed.
+ * The expiry index is also available without mirror, covering the contractors retrieved earlier.
+ * 
+ * @author Bart Hanssens
+ */
+@ApplicationScoped
+public class ContractorIndex {
+	private static final Logger LOG = Logger.getLogger(ContractorIndex.class);
+
+	private volatile InvertedIndex index = new InvertedIndex(Collections.emptyList());
+	private volatile NameIndex names = new NameIndex(Collections.emptyList());
+	private volatile ExpiryIndex expiry = new ExpiryIndex(Collections.emptyList());
+	private final Map<String, Instant> refreshed = new ConcurrentHashMap<>();
+	private final AtomicBoolean refreshing = new AtomicBoolean();
+	private long builtModifications = -1;
+
+	@Inject
+	ContractorMirror mirror;
+
+	@Inject
+	ContractorCache cache;
+
+	@Inject
+	ContractorLookup lookup;
+
+	@ConfigProperty(name = "contractorapi.expiry.window", defaultValue = "P14D")
+	Period window;
+
+	@ConfigProperty(name = "contractorapi.expiry.interval", defaultValue = "P1D")
+	Duration interval;
+
+	@ConfigProperty(name = "contractorapi.expiry.max-refresh", defaultValue = "100")
+	int maxRefresh;
+
+	public boolean isEnabled() {
+		return mirror.isEnabled();
+	}
+
+	public int size() {
+		return index.size();
+	}
+
+	/**
+	 * Search contractors
+	 * 
+	 * @param query search criteria
+	 * @return page of contractors
+	 * @throws IllegalArgumentException when criteria are not valid
+	 */
+	public PageDAO search(QueryDAO query) {
+		return index.search(query);
+	}
+
+	/**
+	 * Search contractors by (part of) the name, allowing typos
+	 * 
+	 * @param name name
+	 * @param limit maximum number of results
+	 * @return contractors, best matches first
+	 */
+	public List<ContractorDAO> searchName(String name, int limit) {
+		return names.search(name, limit);
+	}
+
+	/**
+	 * Get contractors expiring between two dates, soonest first
+	 * 
+	 * @param from first date
+	 * @param till last date (inclusive)
+	 * @param cursor cursor returned with the previous page, or null
+	 * @param limit maximum number of results
+	 * @return page of contractors
+	 * @throws IllegalArgumentException when the cursor is not valid
+	 */
+	public PageDAO expiring(LocalDate from, LocalDate till, String cursor, int limit) {
+		return expiry.expiring(from, till, cursor, limit);
+	}
+
+	@Scheduled(every = "{contractorapi.index.refresh}")
+	synchronized void rebuild() {
+		if (!mirror.isEnabled()) {
+			// contractors retrieved earlier, these can change without changing the number of contractors
+			expiry = new ExpiryIndex(cache.known(null).collect(Collectors.toList()));
+			return;
+		}
+		// contractors can be replaced without changing the number of contractors
+		long modifications = mirror.getModifications();
+		if (modifications == builtModifications) {
+			return;
+		}
+		long start = System.currentTimeMillis();
+		Collection<ContractorDAO> all = new ArrayList<>(mirror.getAll());
+		index = new InvertedIndex(all);
+		names = new NameIndex(all);
+		expiry = new ExpiryIndex(all);
+		builtModifications = modifications;
+		LOG.infof("Index rebuilt, %d contractors in %d ms", index.size(), System.currentTimeMillis() - start);
+	}
+
+	/**
+	 * Retrieve contractors that are about to expire again from the webform, so the data is up-to-date when
+	 * the licence is renewed. Each contractor is only refreshed once per interval.
+	 */
+	@Scheduled(every = "{contractorapi.expiry.refresh}")
+	void refreshExpiring() {
+		if (!refreshing.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			Instant now = Instant.now();
+			refreshed.values().removeIf(t -> t.plus(interval).isBefore(now));
+
+			LocalDate today = LocalDate.now();
+			List<ContractorDAO> soon = expiry.expiring(today, today.plus(window), null, Integer.MAX_VALUE)
+												.getContractors();
+			int count = 0;
+			int failed = 0;
+			for (ContractorDAO contractor: soon) {
+				if (count >= maxRefresh) {
+					break;
+				}
+				String id = ContractorResource.normalize(contractor.getCbeId());
+				if (refreshed.putIfAbsent(id, now) != null) {
+					continue;
+				}
+				count++;
+				// waits for the limiter, one at a time, so interactive lookups keep priority
+				try {
+					if (lookup.refresh(id) instanceof StaleContractorDAO) {
+						failed++;
+					}
+				} catch (RuntimeException e) {
+					failed++;
+				}
+			}
+			if (count > 0) {
+				LOG.infof("Refreshed %d contractors about to expire, %d failed", count, failed);
+			}
+			if (count > failed) {
+				// renewed licences should no longer be listed as expiring
+				rebuild();
+			}
+		} finally {
+			refreshing.set(false);
+		}
+	}
+}
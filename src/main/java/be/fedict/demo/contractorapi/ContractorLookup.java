@@ -0,0 +1,302 @@
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi;
+
+import be.fedict.demo.contractorapi.helper.ContractorDAO;
+import be.fedict.demo.contractorapi.helper.FormDAO;
+import be.fedict.demo.contractorapi.helper.Futures;
+import be.fedict.demo.contractorapi.helper.StageMetrics;
+import be.fedict.demo.contractorapi.helper.StaleContractorDAO;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.rest.client.inject.RestClient;
+
+/**
+ * Look up contractors in the mirror, the snapshot, the cache or the webform
+ * 
+ * @author Bart Hanssens
+ */
+@ApplicationScoped
+public class ContractorLookup {
+	@Inject
+	@RestClient
+	Search search;
+
+	@Inject
+	SessionPool sessions;
+
+	@Inject
+	UpstreamLimiter limiter;
+
+	@Inject
+	ContractorCache cache;
+
+	@Inject
+	ContractorMirror mirror;
+
+	@Inject
+	ContractorSnapshot snapshot;
+
+	@Inject
+	PeerLookup peers;
+
+	@ConfigProperty(name = "contractorapi.search.field.postal-code")
+	Optional<String> postalCodeField;
+
+	@ConfigProperty(name = "contractorapi.search.field.category")
+	Optional<String> categoryField;
+
+	@ConfigProperty(name = "contractorapi.search.field.name")
+	Optional<String> nameField;
+
+	@ConfigProperty(name = "contractorapi.search.page-size", defaultValue = "100")
+	int pageSize;
+
+	@ConfigProperty(name = "contractorapi.search.max-pages", defaultValue = "100")
+	int maxPages;
+
+	/**
+	 * Send the search request, using an existing session
+	 * 
+	 * @param id enterprise ID
+	 * @param form session
+	 * @return contractor
+	 */
+	private CompletionStage<ContractorDAO> search(String id, FormDAO form) {
+		return limiter.callAsync(() -> StageMetrics.timeAsync(StageMetrics.SEARCH, 
+				() -> search.getContractorByIdAsync(id, form.getViewState(), 
+					form.getCookies().get("JSESSIONID"), form.getCookies().get("MY_SESSION"),
+					true, "mainForm:searchButton", "@all", "mainForm:dataTab","mainForm:searchButton", 1)))
+			.whenComplete((contractor, t) -> {
+				// the session can be reused, unless it expired or the connection failed halfway.
+				// "not found" is a valid answer, and calls rejected by the limiter did not use the session
+				if (t == null || !(Futures.isExpired(t) || Futures.causedBy(t, IOException.class))) {
+					sessions.release(form);
+				}
+			});
+	}
+
+	/**
+	 * Search using a pooled session, retrying once with a fresh session if the pooled one has expired.
+	 * 
+	 * @param id enterprise ID
+	 * @return contractor
+	 */
+	CompletionStage<ContractorDAO> fetch(String id) {
+		return sessions.borrow()
+			.thenCompose(form -> search(id, form))
+			.handle((contractor, t) -> {
+				if (t == null) {
+					return CompletableFuture.completedFuture(contractor);
+				}
+				if (Futures.isExpired(t)) {
+					return sessions.newSessionAsync().thenCompose(form -> search(id, form));
+				}
+				return CompletableFuture.<ContractorDAO>failedFuture(Futures.unwrap(t));
+			})
+			.thenCompose(Function.identity());
+	}
+
+	/**
+	 * Search using a session, waiting for the limiter instead of failing immediately.
+	 * 
+	 * @param id enterprise ID
+	 * @param form session
+	 * @return contractor
+	 */
+	private ContractorDAO searchWaiting(String id, FormDAO form) {
+		boolean reuse = true;
+		try {
+			return limiter.call(() -> StageMetrics.time(StageMetrics.SEARCH, 
+				() -> search.getContractorById(id, form.getViewState(), 
+					form.getCookies().get("JSESSIONID"), form.getCookies().get("MY_SESSION"),
+					true, "mainForm:searchButton", "@all", "mainForm:dataTab","mainForm:searchButton", 1)));
+		} catch (RuntimeException e) {
+			reuse = !(Futures.isExpired(e) || Futures.causedBy(e, IOException.class));
+			throw e;
+		} finally {
+			if (reuse) {
+				sessions.release(form);
+			}
+		}
+	}
+
+	/**
+	 * Blocking version of fetch, for background tasks that can wait for the limiter.
+	 * 
+	 * @param id enterprise ID
+	 * @return contractor
+	 */
+	ContractorDAO fetchWaiting(String id) {
+		try {
+			return searchWaiting(id, sessions.borrowWaiting());
+		} catch (RuntimeException e) {
+			if (Futures.isExpired(e)) {
+				return searchWaiting(id, sessions.newSession());
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Blocking version of fetch, returning the result or the error as a completed stage
+	 * 
+	 * @param id enterprise ID
+	 * @return contractor
+	 */
+	private CompletionStage<ContractorDAO> fetchWaitingStage(String id) {
+		try {
+			return CompletableFuture.completedFuture(fetchWaiting(id));
+		} catch (RuntimeException e) {
+			return CompletableFuture.failedFuture(Futures.unwrap(e));
+		}
+	}
+
+	/**
+	 * Get one contractor from the mirror, the snapshot, the cache, the peer owning the ID or the webform
+	 * 
+	 * @param id normalized enterprise ID
+	 * @param forwarded true if forwarded by a peer, so it must not be forwarded again
+	 * @param loader function to retrieve the contractor from the webform
+	 * @return contractor
+	 */
+	private CompletionStage<ContractorDAO> get(String id, boolean forwarded, 
+										Function<String, CompletionStage<ContractorDAO>> loader) {
+		ContractorDAO known = mirror.get(id);
+		if (known == null) {
+			known = snapshot.get(id);
+		}
+		if (known != null) {
+			return CompletableFuture.completedFuture(known);
+		}
+		if (forwarded || !peers.isEnabled()) {
+			return cache.get(id, k -> loader.apply(k).thenApply(mirror::add));
+		}
+		return cache.get(id, k -> peers.get(k, loader)
+			.thenApply(c -> (c instanceof StaleContractorDAO) ? c : mirror.add(c)));
+	}
+
+	/**
+	 * Get one contractor from the mirror, the snapshot, the cache, the peer owning the ID or the webform.
+	 * Calls to the webform are rejected immediately when the limit has been reached.
+	 * 
+	 * @param id normalized enterprise ID
+	 * @param forwarded true if forwarded by a peer, so it must not be forwarded again
+	 * @return contractor
+	 */
+	public CompletionStage<ContractorDAO> get(String id, boolean forwarded) {
+		return get(id, forwarded, this::fetch);
+	}
+
+	/**
+	 * Get one contractor like get, but wait for the limiter instead of failing immediately.
+	 * This blocks, so it should only be used by background tasks and batches.
+	 * 
+	 * @param id normalized enterprise ID
+	 * @return contractor
+	 */
+	public ContractorDAO getWaiting(String id) {
+		return get(id, false, this::fetchWaitingStage).toCompletableFuture().join();
+	}
+
+	/**
+	 * Retrieve one contractor from the webform, and update the mirror or the cache.
+	 * This blocks until the limiter allows the call, so it should only be used by background tasks.
+	 * 
+	 * @param id normalized enterprise ID
+	 * @return contractor, or last known data if the webform failed
+	 */
+	public ContractorDAO refresh(String id) {
+		if (mirror.isEnabled()) {
+			return mirror.add(fetchWaiting(id));
+		}
+		return cache.refresh(id, this::fetchWaitingStage).toCompletableFuture().join();
+	}
+
+	/**
+	 * Add a criterion for the webform, if a value was given
+	 * 
+	 * @param criteria criteria
+	 * @param field name of the form field
+	 * @param value value or null
+	 * @param label name of the criterion, used in the error message
+	 * @throws IllegalArgumentException when the form field is not configured
+	 */
+	private static void criterion(Map<String, String> criteria, Optional<String> field, String value, String label) {
+		if (value == null || value.trim().isEmpty()) {
+			return;
+		}
+		if (!field.isPresent()) {
+			throw new IllegalArgumentException("Search by " + label + " not configured");
+		}
+		criteria.put(field.get(), value.trim());
+	}
+
+	/**
+	 * Store a contractor retrieved in bulk in the mirror or the cache
+	 * 
+	 * @param contractor contractor
+	 */
+	private void store(ContractorDAO contractor) {
+		if (mirror.isEnabled()) {
+			mirror.add(contractor);
+		} else {
+			cache.put(ContractorResource.normalize(contractor.getCbeId()), contractor);
+		}
+	}
+
+	/**
+	 * Retrieve all contractors matching the criteria using the filters of the webform, following the
+	 * pagination of the results, and store them in the mirror or the cache.
+	 * 
+	 * @param postalCode postal code or null
+	 * @param category category or null
+	 * @param name (part of) the name or null
+	 * @return number of contractors
+	 * @throws IllegalArgumentException when there are no criteria, or a criterion is not configured
+	 */
+	public int load(String postalCode, String category, String name) {
+		Map<String, String> criteria = new LinkedHashMap<>();
+		criterion(criteria, postalCodeField, postalCode, "postal code");
+		criterion(criteria, categoryField, category, "category");
+		criterion(criteria, nameField, name, "name");
+		if (criteria.isEmpty()) {
+			throw new IllegalArgumentException("No criteria");
+		}
+		return new UpstreamPager(search, sessions, limiter, criteria, pageSize).forEach(maxPages, this::store).size();
+	}
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi;
+
+import be.fedict.demo.contractorapi.helper.ContractorDAO;
+
+import io.quarkus.scheduler.Scheduled;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.rest.client.inject.RestClient;
+import org.jboss.logging.Logger;
+
+/**
+ * In-memory copy of the complete list of contractors, refreshed by paging through the search results
+ * of the webform.
+ * Contractors are updated page by page, so the mirror can be used while it is being refreshed.
+ * 
+ * @author Bart Hanssens
+ */
+@ApplicationScoped
+public class ContractorMirror {
+	private static final Logger LOG = Logger.getLogger(ContractorMirror.class);
+
+	private final Map<String, ContractorDAO> contractors = new ConcurrentHashMap<>();
+	private final Map<String, Instant> modified = new ConcurrentHashMap<>();
+	private final AtomicBoolean running = new AtomicBoolean();
+	private final AtomicLong modifications = new AtomicLong();
+	private volatile Instant lastRefresh;
+
+	@Inject
+	@RestClient
+	Search search;
+
+	@Inject
+	SessionPool sessions;
+
+	@Inject
+	UpstreamLimiter limiter;
+
+	@Inject
+	ContractorChanges changes;
+
+	@ConfigProperty(name = "contractorapi.mirror.enabled", defaultValue = "false")
+	boolean enabled;
+
+	@ConfigProperty(name = "contractorapi.mirror.page-size", defaultValue = "100")
+	int pageSize;
+
+	@ConfigProperty(name = "contractorapi.mirror.max-pages", defaultValue = "10000")
+	int maxPages;
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public Instant getLastRefresh() {
+		return lastRefresh;
+	}
+
+	/**
+	 * Get the number of times a contractor was added, changed or removed.
+	 * This can be used to check if the contents changed, without comparing the contractors.
+	 * 
+	 * @return number of modifications
+	 */
+	public long getModifications() {
+		return modifications.get();
+	}
+
+	/**
+	 * Get contractor from the mirror
+	 * 
+	 * @param id normalized enterprise ID
+	 * @return contractor or null when not in the mirror (or the mirror is disabled)
+	 */
+	public ContractorDAO get(String id) {
+		return enabled ? contractors.get(id) : null;
+	}
+
+	/**
+	 * Add a contractor, e.g. after it was retrieved separately
+	 * 
+	 * @param contractor contractor
+	 * @return the same contractor
+	 */
+	public ContractorDAO add(ContractorDAO contractor) {
+		if (enabled) {
+			put(ContractorResource.normalize(contractor.getCbeId()), contractor);
+		}
+		return contractor;
+	}
+
+	/**
+	 * Add or replace a contractor, keeping track of the time the data was last changed
+	 * 
+	 * @param id normalized enterprise ID
+	 * @param contractor contractor
+	 */
+	private void put(String id, ContractorDAO contractor) {
+		ContractorDAO old = contractors.put(id, contractor);
+		if (!contractor.equals(old)) {
+			modified.put(id, Instant.now());
+			changes.record(old, contractor);
+			modifications.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Get the contractors that changed (or were added) since a given time
+	 * 
+	 * @param since time or null for all contractors
+	 * @return stream of contractors
+	 */
+	public Stream<ContractorDAO> getModifiedSince(Instant since) {
+		if (since == null) {
+			return contractors.values().stream();
+		}
+		// contractors that are being added may not have a time yet
+		return contractors.entrySet().stream()
+							.filter(e -> !modified.getOrDefault(e.getKey(), Instant.MAX).isBefore(since))
+							.map(Map.Entry::getValue);
+	}
+
+	/**
+	 * Get all contractors in the mirror
+	 * 
+	 * @return unmodifiable collection
+	 */
+	public Collection<ContractorDAO> getAll() {
+		return Collections.unmodifiableCollection(contractors.values());
+	}
+
+	public int size() {
+		return contractors.size();
+	}
+
+	@Scheduled(every = "{contractorapi.mirror.refresh}")
+	void refresh() {
+		if (!enabled || !running.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			load();
+		} catch (RuntimeException e) {
+			LOG.warnf("Could not refresh mirror: %s", e.getMessage());
+		} finally {
+			running.set(false);
+		}
+	}
+
+	/**
+	 * Page through all search results, and remove contractors that are no longer listed.
+	 * Contractors are only removed when all pages were retrieved, so an empty or truncated result
+	 * (e.g. after a change of the webform) does not wipe the mirror.
+	 */
+	void load() {
+		UpstreamPager pager = new UpstreamPager(search, sessions, limiter, Collections.emptyMap(), pageSize);
+		Set<String> seen = pager.forEach(maxPages, c -> put(ContractorResource.normalize(c.getCbeId()), c));
+		if (seen.isEmpty() || !pager.isComplete()) {
+			LOG.warnf("Mirror refresh incomplete, %d contractors retrieved, none removed", seen.size());
+			return;
+		}
+		if (contractors.keySet().retainAll(seen)) {
+			modifications.incrementAndGet();
+		}
+		modified.keySet().retainAll(seen);
+		lastRefresh = Instant.now();
+		LOG.infof("Mirror refreshed, %d contractors", seen.size());
+	}
+}
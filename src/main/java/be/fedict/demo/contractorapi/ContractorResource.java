@@ -1,79 +1,549 @@
-/*
- * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
- * All rights reserved.
- *
- * Redistribution and use in source and binary forms, with or without
- * modification, are permitted provided that the following conditions are met:
- *
- * * Redistributions of source code must retain the above copyright notice, this
- *   list of conditions and the following disclaimer.
- * * Redistributions in binary form must reproduce the above copyright notice,
- *   this list of conditions and the following disclaimer in the documentation
- *   and/or other materials provided with the distribution.
- *
- * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
- * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
- * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
- * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
- * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
- * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
- * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
- * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
- * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
- * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
- * POSSIBILITY OF SUCH DAMAGE.
- */
-package be.fedict.demo.contractorapi;
-
-import be.fedict.demo.contractorapi.helper.ContractorDAO;
-import be.fedict.demo.contractorapi.helper.FormDAO;
-
-import javax.inject.Inject;
-
-import javax.ws.rs.GET;
-import javax.ws.rs.Path;
-import javax.ws.rs.PathParam;
-import javax.ws.rs.Produces;
-import javax.ws.rs.WebApplicationException;
-import javax.ws.rs.core.MediaType;
-import javax.ws.rs.core.Response;
-
-import org.eclipse.microprofile.openapi.annotations.Operation;
-import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
-import org.eclipse.microprofile.openapi.annotations.responses.APIResponses;
-import org.eclipse.microprofile.rest.client.inject.RestClient;
-
-/**
- * Main entry for the API
- * 
- * @author Bart Hanssens
- */
-@Path("/contractor")
-@Produces(MediaType.APPLICATION_JSON)
-public class ContractorResource {
-	@Inject
-    @RestClient
-	Search search;
-	
-	@GET
-	@Path("/{id}")
-	@Operation(summary = "Get contractor", description = "Get one contractor by enterprise ID")
-	@APIResponses(value = {
-		@APIResponse(responseCode = "200", description = "Success"),
-		@APIResponse(responseCode = "404", description = "Not Found"),
-		@APIResponse(responseCode = "500", description = "Other error")
-	})
-	public ContractorDAO getContractorById(@PathParam("id") String str) {
-		// remove "BE", spaces, dots ...
-		String id = str.replaceAll("\\D", "");
-		if (id.isEmpty() || id.length() < 9) {
-			throw new WebApplicationException("ID too short", Response.Status.BAD_REQUEST);
-		}
-
-		// mimic manual form entry
-		FormDAO form = search.getSearchForm(5, 8, "NL");
-		return search.getContractorById(id, form.getViewState(), 
-				form.getCookies().get("JSESSIONID"), form.getCookies().get("MY_SESSION"),
-				true, "mainForm:searchButton", "@all", "mainForm:dataTab","mainForm:searchButton", 1);
-    }
-}
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi;
+
+import be.fedict.demo.contractorapi.helper.BatchResultDAO;
+import be.fedict.demo.contractorapi.helper.CatClasses;
+import be.fedict.demo.contractorapi.helper.ContractorDAO;
+import be.fedict.demo.contractorapi.helper.EnterpriseNumber;
+import be.fedict.demo.contractorapi.helper.Futures;
+import be.fedict.demo.contractorapi.helper.PageDAO;
+import be.fedict.demo.contractorapi.helper.QueryDAO;
+import be.fedict.demo.contractorapi.helper.StaleContractorDAO;
+import be.fedict.demo.contractorapi.helper.StageMetrics;
+
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.inject.Inject;
+import javax.json.bind.Jsonb;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.sse.Sse;
+import javax.ws.rs.sse.SseEventSink;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.Tag;
+import org.eclipse.microprofile.openapi.annotations.Operation;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponses;
+
+/**
+ * Main entry for the API
+ * 
+ * @author Bart Hanssens
+ */
+@Path("/contractor")
+@Produces({MediaType.APPLICATION_JSON, CborBodyWriter.APPLICATION_CBOR})
+public class ContractorResource {
+	@Inject
+	ContractorLookup lookup;
+
+	@Inject
+	ContractorCache cache;
+
+	@Inject
+	BatchExecutor batch;
+
+	@Inject
+	ContractorMirror mirror;
+
+	@Inject
+	ContractorIndex index;
+
+	@Inject
+	ContractorChanges changes;
+
+	@Inject
+	Jsonb jsonb;
+
+	@ConfigProperty(name = "contractorapi.search.max-limit", defaultValue = "1000")
+	int maxLimit;
+
+	@ConfigProperty(name = "contractorapi.response.max-age", defaultValue = "PT5M")
+	Duration maxAge;
+
+	/**
+	 * Remove "BE", spaces, dots ... from an enterprise ID
+	 * 
+	 * @param str enterprise ID as entered
+	 * @return digits only, 10 digits for valid IDs
+	 */
+	static String normalize(String str) {
+		return EnterpriseNumber.normalize(str);
+	}
+
+	/**
+	 * Select JSON or CBOR based on the Accept header, preferring JSON when both are equally acceptable
+	 * 
+	 * @param accept value of the Accept header or null
+	 * @return media type
+	 */
+	static MediaType select(String accept) {
+		if (accept == null) {
+			return MediaType.APPLICATION_JSON_TYPE;
+		}
+		double json = 0;
+		double cbor = 0;
+		for (String str: accept.split(",")) {
+			MediaType mt;
+			try {
+				mt = MediaType.valueOf(str.trim());
+			} catch (IllegalArgumentException iae) {
+				continue;
+			}
+			double q = quality(mt.getParameters().getOrDefault("q", "1"));
+			if (mt.isCompatible(MediaType.APPLICATION_JSON_TYPE)) {
+				json = Math.max(json, q);
+			}
+			if (mt.isCompatible(CborBodyWriter.APPLICATION_CBOR_TYPE)) {
+				cbor = Math.max(cbor, q);
+			}
+		}
+		return (cbor > json) ? CborBodyWriter.APPLICATION_CBOR_TYPE : MediaType.APPLICATION_JSON_TYPE;
+	}
+
+	/**
+	 * Check if gzip is acceptable, using the quality values of the Accept-Encoding header.
+	 * An explicit gzip entry takes precedence over the wildcard.
+	 * 
+	 * @param encoding value of the Accept-Encoding header or null
+	 * @return true if gzip can be used
+	 */
+	static boolean acceptsGzip(String encoding) {
+		if (encoding == null) {
+			return false;
+		}
+		double gzip = -1;
+		double any = -1;
+		for (String str: encoding.split(",")) {
+			String[] parts = str.split(";");
+			String coding = parts[0].trim().toLowerCase(Locale.ROOT);
+			double q = 1;
+			for (int i = 1; i < parts.length; i++) {
+				String[] param = parts[i].split("=", 2);
+				if (param.length == 2 && param[0].trim().equalsIgnoreCase("q")) {
+					q = quality(param[1].trim());
+				}
+			}
+			if (coding.equals("gzip") || coding.equals("x-gzip")) {
+				gzip = Math.max(gzip, q);
+			} else if (coding.equals("*")) {
+				any = Math.max(any, q);
+			}
+		}
+		return (gzip >= 0) ? gzip > 0 : any > 0;
+	}
+
+	/**
+	 * Parse a quality value, invalid values are not acceptable
+	 * 
+	 * @param value quality value
+	 * @return number between 0 and 1
+	 */
+	private static double quality(String value) {
+		try {
+			return Double.parseDouble(value);
+		} catch (NumberFormatException nfe) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Get an entity tag based on the contents of the contractor and the representation, 
+	 * so each different response body has a different tag.
+	 * 
+	 * @param c contractor
+	 * @param type media type of the response
+	 * @return strong entity tag
+	 */
+	static EntityTag etag(ContractorDAO c, MediaType type) {
+		// 64-bit FNV-1a
+		long hash = 0xcbf29ce484222325L;
+		// stale contractors have extra fields
+		String stale = (c instanceof StaleContractorDAO) ? "stale " + ((StaleContractorDAO) c).getAge() : "";
+		Object[] fields = { type.getSubtype(), stale, c.getCbeId(), c.getVatId(), c.getName(), c.getLicenseNo(), 
+							c.getStreet(), c.getPostalCode(), c.getMunicipality(), c.getFromDate(), c.getTillDate() };
+		for (Object field: fields) {
+			String str = (field != null) ? field.toString() : "";
+			for (int i = 0; i < str.length(); i++) {
+				hash = (hash ^ str.charAt(i)) * 0x100000001b3L;
+			}
+			hash = (hash ^ 0x1f) * 0x100000001b3L;
+		}
+		for (short s: c.getCatClassCodes()) {
+			hash = (hash ^ (s & 0xFFFF)) * 0x100000001b3L;
+		}
+		return new EntityTag(Long.toHexString(hash));
+	}
+
+	/**
+	 * Check if an If-None-Match header matches the entity tag (weak comparison)
+	 * 
+	 * @param ifNoneMatch header value or null
+	 * @param tag entity tag
+	 * @return true if matching
+	 */
+	static boolean matches(String ifNoneMatch, EntityTag tag) {
+		if (ifNoneMatch == null) {
+			return false;
+		}
+		for (String str: ifNoneMatch.split(",")) {
+			String t = str.trim();
+			if (t.startsWith("W/")) {
+				t = t.substring(2);
+			}
+			if (t.equals("*") || (t.length() == tag.getValue().length() + 2 && t.startsWith("\"") 
+										&& t.regionMatches(1, tag.getValue(), 0, tag.getValue().length()))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Build the response with entity tag and cache control, or "not modified" when the client already has 
+	 * the same contractor data.
+	 * 
+	 * @param contractor contractor
+	 * @param type media type of the response
+	 * @param ifNoneMatch value of the If-None-Match header or null
+	 * @return response
+	 */
+	private Response respond(ContractorDAO contractor, MediaType type, String ifNoneMatch) {
+		EntityTag tag = etag(contractor, type);
+		CacheControl cc = new CacheControl();
+		cc.setMaxAge((contractor instanceof StaleContractorDAO) ? 0 : (int) maxAge.toSeconds());
+
+		Response.ResponseBuilder builder = matches(ifNoneMatch, tag) 
+											? Response.notModified() 
+											: Response.ok(contractor, type);
+		if (contractor instanceof StaleContractorDAO) {
+			builder.header(PeerLookup.AGE, ((StaleContractorDAO) contractor).getAge());
+		}
+		return builder.tag(tag).cacheControl(cc).header(HttpHeaders.VARY, HttpHeaders.ACCEPT).build();
+	}
+
+	@GET
+	@Path("/{id}")
+	@Operation(summary = "Get contractor", description = "Get one contractor by enterprise ID")
+	@APIResponses(value = {
+		@APIResponse(responseCode = "200", description = "Success"),
+		@APIResponse(responseCode = "304", description = "Not modified (If-None-Match)"),
+		@APIResponse(responseCode = "400", description = "Invalid enterprise ID"),
+		@APIResponse(responseCode = "404", description = "Not Found"),
+		@APIResponse(responseCode = "500", description = "Other error")
+	})
+	public CompletionStage<Response> getContractorById(@PathParam("id") String str, 
+									@HeaderParam(HttpHeaders.ACCEPT) String accept,
+									@HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch,
+									@HeaderParam(PeerLookup.FORWARDED) String peer) {
+		// the headers are read here, as the request context is not available when the lookup completes
+		MediaType type = select(accept);
+		return getContractor(str, peer != null).thenApply(contractor -> respond(contractor, type, ifNoneMatch));
+	}
+
+	/**
+	 * Get one contractor from the mirror, the snapshot, the cache or the webform
+	 * 
+	 * @param str enterprise ID as entered
+	 * @param forwarded true if forwarded by a peer
+	 * @return contractor
+	 */
+	private CompletionStage<ContractorDAO> getContractor(String str, boolean forwarded) {
+		return lookup.get(checkId(str), forwarded);
+	}
+
+	/**
+	 * Reject invalid IDs before contacting the webform
+	 * 
+	 * @param str enterprise ID
+	 * @return normalized enterprise ID
+	 * @throws WebApplicationException when the ID is not valid
+	 */
+	private static String checkId(String str) {
+		EnterpriseNumber.Invalid invalid = EnterpriseNumber.validate(str);
+		if (invalid != null) {
+			StageMetrics.count(StageMetrics.INVALID_ID, new Tag("reason", invalid.name().toLowerCase(Locale.ROOT)));
+			throw new WebApplicationException(invalid.getReason(), 
+				Response.status(Response.Status.BAD_REQUEST)
+						.entity(Collections.singletonMap("error", invalid.getReason()))
+						.type(MediaType.APPLICATION_JSON).build());
+		}
+		return normalize(str);
+	}
+
+	@GET
+	@Path("/search")
+	@Operation(summary = "Search contractors", 
+		description = "Search contractors by category and minimum class, postal code range, municipality and validity date")
+	@APIResponses(value = {
+		@APIResponse(responseCode = "200", description = "Success"),
+		@APIResponse(responseCode = "400", description = "Invalid criteria"),
+		@APIResponse(responseCode = "503", description = "Search not available")
+	})
+	public PageDAO searchContractors(@QueryParam("category") String category, 
+									@QueryParam("class") Integer minClass,
+									@QueryParam("postalFrom") Integer postalFrom, 
+									@QueryParam("postalTo") Integer postalTo, 
+									@QueryParam("municipality") String municipality, 
+									@QueryParam("validOn") String validOn, 
+									@QueryParam("cursor") String cursor, 
+									@QueryParam("limit") @DefaultValue("50") int limit) {
+		if (!index.isEnabled()) {
+			throw new WebApplicationException("Search requires the mirror", Response.Status.SERVICE_UNAVAILABLE);
+		}
+		if (limit < 1 || limit > maxLimit) {
+			throw new WebApplicationException("Invalid limit", Response.Status.BAD_REQUEST);
+		}
+
+		QueryDAO query = new QueryDAO();
+		query.setCategory(category);
+		query.setMinClass(minClass);
+		query.setPostalFrom(postalFrom);
+		query.setPostalTo(postalTo);
+		query.setMunicipality(municipality);
+		query.setCursor(cursor);
+		query.setLimit(limit);
+		try {
+			query.setValidOn(ContractorDAO.parseDate(validOn));
+			return index.search(query);
+		} catch (DateTimeException | IllegalArgumentException e) {
+			throw new WebApplicationException(e.getMessage(), Response.Status.BAD_REQUEST);
+		}
+	}
+
+	@GET
+	@Path("/name")
+	@Operation(summary = "Search by name", 
+		description = "Search contractors by (the start of) words in the name, tolerating accents, case and small typos")
+	@APIResponses(value = {
+		@APIResponse(responseCode = "200", description = "Success, best matches first"),
+		@APIResponse(responseCode = "400", description = "Name too short"),
+		@APIResponse(responseCode = "503", description = "Search not available")
+	})
+	public List<ContractorDAO> searchName(@QueryParam("q") String name, 
+										@QueryParam("limit") @DefaultValue("20") int limit) {
+		if (!index.isEnabled()) {
+			throw new WebApplicationException("Search requires the mirror", Response.Status.SERVICE_UNAVAILABLE);
+		}
+		if (name == null || name.trim().length() < 2) {
+			throw new WebApplicationException("Name too short", Response.Status.BAD_REQUEST);
+		}
+		if (limit < 1 || limit > maxLimit) {
+			throw new WebApplicationException("Invalid limit", Response.Status.BAD_REQUEST);
+		}
+		return index.searchName(name, limit);
+	}
+
+	@GET
+	@Path("/expiring")
+	@Operation(summary = "Expiring soon", 
+		description = "Get known contractors with a registration expiring within a number of days, soonest first")
+	@APIResponses(value = {
+		@APIResponse(responseCode = "200", description = "Success"),
+		@APIResponse(responseCode = "400", description = "Invalid criteria")
+	})
+	public PageDAO expiring(@QueryParam("from") String from, 
+							@QueryParam("days") @DefaultValue("30") int days, 
+							@QueryParam("cursor") String cursor, 
+							@QueryParam("limit") @DefaultValue("50") int limit) {
+		if (days < 0 || days > 3660) {
+			throw new WebApplicationException("Invalid number of days", Response.Status.BAD_REQUEST);
+		}
+		if (limit < 1 || limit > maxLimit) {
+			throw new WebApplicationException("Invalid limit", Response.Status.BAD_REQUEST);
+		}
+		try {
+			LocalDate start = ContractorDAO.parseDate(from);
+			if (start == null) {
+				start = LocalDate.now();
+			}
+			return index.expiring(start, start.plusDays(days), cursor, limit);
+		} catch (DateTimeException | IllegalArgumentException e) {
+			throw new WebApplicationException(e.getMessage(), Response.Status.BAD_REQUEST);
+		}
+	}
+
+	/**
+	 * Get all known contractors: the mirror or, when the mirror is disabled, the contractors retrieved earlier
+	 * 
+	 * @param since only contractors changed since this time, or null for all
+	 * @return stream of contractors
+	 */
+	private Stream<ContractorDAO> known(Instant since) {
+		return mirror.isEnabled() ? mirror.getModifiedSince(since) : cache.known(since);
+	}
+
+	@GET
+	@Path("/export")
+	@Produces(NdjsonExport.APPLICATION_NDJSON)
+	@Operation(summary = "Export contractors", 
+		description = "Stream all known contractors as newline-delimited JSON, gzip-compressed when accepted by the client")
+	@APIResponses(value = {
+		@APIResponse(responseCode = "200", description = "Success"),
+		@APIResponse(responseCode = "400", description = "Invalid criteria")
+	})
+	public Response export(@QueryParam("modifiedSince") String modifiedSince,
+							@QueryParam("category") String category, 
+							@QueryParam("class") Integer minClass,
+							@HeaderParam(HttpHeaders.ACCEPT_ENCODING) String encoding) {
+		Instant since = null;
+		if (modifiedSince != null) {
+			try {
+				since = Instant.parse(modifiedSince);
+			} catch (DateTimeException dte) {
+				throw new WebApplicationException("Invalid time", Response.Status.BAD_REQUEST);
+			}
+		}
+		Predicate<ContractorDAO> filter = c -> true;
+		if (category != null) {
+			int cat = CatClasses.encode(category.trim().toUpperCase(Locale.ROOT));
+			int min = (minClass != null) ? minClass : 0;
+			if (cat < 0 || min < 0 || min > 9) {
+				throw new WebApplicationException("Invalid category or class", Response.Status.BAD_REQUEST);
+			}
+			filter = filter.and(c -> CatClasses.get(c.getCatClassCodes(), cat) >= min);
+		} else if (minClass != null) {
+			throw new WebApplicationException("Class requires a category", Response.Status.BAD_REQUEST);
+		}
+
+		boolean gzip = acceptsGzip(encoding);
+		Response.ResponseBuilder builder = Response.ok(new NdjsonExport(known(since).filter(filter), jsonb, gzip))
+													.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+		if (gzip) {
+			builder.encoding("gzip");
+		}
+		return builder.build();
+	}
+
+	@GET
+	@Path("/changes")
+	@Produces(MediaType.SERVER_SENT_EVENTS)
+	@Operation(summary = "Changes", 
+		description = "Stream changes in contractor data as server-sent events, resuming after Last-Event-ID or cursor")
+	@APIResponses(value = {
+		@APIResponse(responseCode = "200", description = "Success"),
+		@APIResponse(responseCode = "400", description = "Invalid cursor")
+	})
+	public void changes(@Context SseEventSink sink, @Context Sse sse,
+						@HeaderParam(HttpHeaders.LAST_EVENT_ID_HEADER) String lastEventId,
+						@QueryParam("cursor") String cursor) {
+		String str = (lastEventId != null) ? lastEventId : cursor;
+		long from;
+		try {
+			// only new changes when no cursor is given
+			from = (str != null) ? Long.parseLong(str.trim()) : changes.getLatest();
+		} catch (NumberFormatException nfe) {
+			throw new WebApplicationException("Invalid cursor", Response.Status.BAD_REQUEST);
+		}
+		changes.subscribe(sink, sse, from);
+	}
+
+	/**
+	 * Get one contractor as part of a batch, returning the error instead of throwing it.
+	 * 
+	 * @param str enterprise ID
+	 * @return result or error
+	 */
+	private BatchResultDAO getBatchResult(String str) {
+		BatchResultDAO result = new BatchResultDAO();
+		result.setId(str);
+		try {
+			// running on the batch pool, so it can wait for the limiter instead of being rejected
+			result.setContractor(lookup.getWaiting(checkId(str)));
+			result.setStatus(Response.Status.OK.getStatusCode());
+		} catch (RuntimeException re) {
+			Throwable t = Futures.unwrap(re);
+			if (t instanceof ProcessingException) {
+				result.setStatus(Futures.isNotFound(t)
+								? Response.Status.NOT_FOUND.getStatusCode()
+								: Response.Status.INTERNAL_SERVER_ERROR.getStatusCode());
+				result.setError(Futures.processingCause(t).getMessage());
+			} else if (t instanceof WebApplicationException) {
+				result.setStatus(((WebApplicationException) t).getResponse().getStatus());
+				result.setError(t.getMessage());
+			} else {
+				result.setStatus(Response.Status.INTERNAL_SERVER_ERROR.getStatusCode());
+				result.setError(t.getMessage());
+			}
+		}
+		return result;
+	}
+
+	@POST
+	@Path("/batch")
+	@Consumes(MediaType.APPLICATION_JSON)
+	@Operation(summary = "Get contractors", description = "Get multiple contractors by enterprise ID, with a result or error per ID")
+	@APIResponses(value = {
+		@APIResponse(responseCode = "200", description = "Success"),
+		@APIResponse(responseCode = "400", description = "Empty or too many IDs")
+	})
+	public List<BatchResultDAO> getContractorsById(List<String> strs) {
+		if (strs == null || strs.isEmpty()) {
+			throw new WebApplicationException("No IDs", Response.Status.BAD_REQUEST);
+		}
+		if (strs.size() > batch.getMaxSize()) {
+			throw new WebApplicationException("Too many IDs", Response.Status.BAD_REQUEST);
+		}
+
+		// only look up the same (normalized) ID once, invalid IDs are reported as entered
+		Map<String, CompletableFuture<BatchResultDAO>> tasks = new LinkedHashMap<>();
+		for (String str: strs) {
+			String key = (EnterpriseNumber.validate(str) == null) ? normalize(str) : str;
+			tasks.computeIfAbsent(key, k -> batch.submit(() -> getBatchResult(str)));
+		}
+		return tasks.values().stream().map(CompletableFuture::join).collect(Collectors.toList());
+	}
+}
@@ -0,0 +1,357 @@
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi;
+
+import be.fedict.demo.contractorapi.helper.ContractorDAO;
+
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.scheduler.Scheduled;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+/**
+ * Binary snapshot of the mirror on disk, so contractors can be served right after a restart while 
+ * the mirror is still being refreshed.
+ * 
+ * The file is memory-mapped and only the requested contractor is decoded.
+ * Layout: a header (magic, version, creation time, count and CRC32 checksums), an index of 
+ * enterprise ID and record offset sorted by ID, followed by the records.
+ * 
+ * @author Bart Hanssens
+ */
+@ApplicationScoped
+public class ContractorSnapshot {
+	private static final Logger LOG = Logger.getLogger(ContractorSnapshot.class);
+
+	private static final int MAGIC = 0x43545253; // "CTRS"
+	private static final int VERSION = 3;
+	private static final int NO_DATE = Integer.MIN_VALUE;
+	private static final int HEADER_SIZE = 32;
+	private static final int ENTRY_SIZE = 12;
+
+	/**
+	 * Mapped snapshot file
+	 */
+	static class Mapping {
+		private final ByteBuffer buf;
+		private final Instant created;
+		private final int count;
+		private final int dataStart;
+
+		Mapping(ByteBuffer buf, Instant created, int count) {
+			this.buf = buf;
+			this.created = created;
+			this.count = count;
+			this.dataStart = HEADER_SIZE + count * ENTRY_SIZE;
+		}
+
+		Instant getCreated() {
+			return created;
+		}
+
+		int getCount() {
+			return count;
+		}
+
+		/**
+		 * Binary search the index and decode the record
+		 * 
+		 * @param id enterprise ID as number
+		 * @return contractor or null when not found
+		 */
+		ContractorDAO get(long id) {
+			int low = 0;
+			int high = count - 1;
+			while (low <= high) {
+				int mid = (low + high) >>> 1;
+				long key = buf.getLong(HEADER_SIZE + mid * ENTRY_SIZE);
+				if (key < id) {
+					low = mid + 1;
+				} else if (key > id) {
+					high = mid - 1;
+				} else {
+					int offset = buf.getInt(HEADER_SIZE + mid * ENTRY_SIZE + 8);
+					ByteBuffer rec = buf.duplicate();
+					rec.position(dataStart + offset);
+					return readContractor(rec);
+				}
+			}
+			return null;
+		}
+	}
+
+	private volatile Mapping mapping;
+	private volatile Instant saved;
+
+	@Inject
+	ContractorMirror mirror;
+
+	@ConfigProperty(name = "contractorapi.snapshot.file")
+	Optional<String> file;
+
+	@ConfigProperty(name = "contractorapi.snapshot.max-age", defaultValue = "P7D")
+	Duration maxAge;
+
+	void onStart(@Observes StartupEvent ev) {
+		if (file.isEmpty() || !mirror.isEnabled()) {
+			return;
+		}
+		Path path = Paths.get(file.get());
+		if (!Files.exists(path)) {
+			return;
+		}
+		try {
+			Mapping m = open(path);
+			if (m.getCreated().plus(maxAge).isBefore(Instant.now())) {
+				LOG.warnf("Snapshot %s too old, ignored", path);
+				return;
+			}
+			mapping = m;
+			LOG.infof("Snapshot %s opened, %d contractors", path, m.getCount());
+		} catch (IOException | RuntimeException e) {
+			LOG.warnf("Could not open snapshot %s: %s", path, e.getMessage());
+		}
+	}
+
+	/**
+	 * Get contractor from the snapshot, only as long as the mirror has not been refreshed
+	 * 
+	 * @param id normalized enterprise ID
+	 * @return contractor or null
+	 */
+	public ContractorDAO get(String id) {
+		Mapping m = mapping;
+		if (m == null || mirror.getLastRefresh() != null) {
+			return null;
+		}
+		try {
+			return m.get(Long.parseLong(id));
+		} catch (RuntimeException e) {
+			LOG.warnf("Could not read %s from snapshot: %s", id, e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Write the mirror to disk, if it was refreshed since the last snapshot
+	 */
+	@Scheduled(every = "{contractorapi.snapshot.interval}")
+	void save() {
+		Instant refreshed = mirror.getLastRefresh();
+		if (file.isEmpty() || refreshed == null || refreshed.equals(saved)) {
+			return;
+		}
+		Path path = Paths.get(file.get());
+		try {
+			write(path, mirror.getAll());
+			saved = refreshed;
+			// no need to keep the old snapshot mapped, the mirror is complete
+			mapping = null;
+			LOG.infof("Snapshot %s written", path);
+		} catch (IOException | RuntimeException e) {
+			LOG.warnf("Could not write snapshot %s: %s", path, e.getMessage());
+		}
+	}
+
+	/**
+	 * Open and verify a snapshot file
+	 * 
+	 * @param path snapshot file
+	 * @return mapping
+	 * @throws IOException when the file is corrupt or has an unknown version
+	 */
+	static Mapping open(Path path) throws IOException {
+		ByteBuffer buf;
+		try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+			buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+		}
+		if (buf.limit() < HEADER_SIZE || buf.getInt(0) != MAGIC) {
+			throw new IOException("Not a snapshot file");
+		}
+		if (buf.getInt(4) != VERSION) {
+			throw new IOException("Unsupported snapshot version " + buf.getInt(4));
+		}
+		Instant created = Instant.ofEpochMilli(buf.getLong(8));
+		int count = buf.getInt(16);
+		long dataStart = HEADER_SIZE + (long) count * ENTRY_SIZE;
+		if (count < 0 || dataStart > buf.limit()) {
+			throw new IOException("Invalid count");
+		}
+		if (crc(buf, HEADER_SIZE, (int) dataStart) != buf.getInt(20)
+				|| crc(buf, (int) dataStart, buf.limit()) != buf.getInt(24)) {
+			throw new IOException("Checksum mismatch");
+		}
+		return new Mapping(buf, created, count);
+	}
+
+	/**
+	 * Write contractors to a snapshot file, replacing the existing file
+	 * 
+	 * @param path snapshot file
+	 * @param contractors contractors
+	 * @throws IOException 
+	 */
+	static void write(Path path, Collection<ContractorDAO> contractors) throws IOException {
+		Map<Long, ContractorDAO> sorted = new TreeMap<>();
+		for (ContractorDAO contractor: contractors) {
+			String id = ContractorResource.normalize(contractor.getCbeId());
+			if (!id.isEmpty() && id.length() < 19) {
+				sorted.put(Long.parseLong(id), contractor);
+			}
+		}
+
+		ByteBuffer index = ByteBuffer.allocate(sorted.size() * ENTRY_SIZE);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(sorted.size() * 128);
+		DataOutputStream data = new DataOutputStream(bytes);
+		for (Map.Entry<Long, ContractorDAO> e: sorted.entrySet()) {
+			index.putLong(e.getKey());
+			index.putInt(data.size());
+			writeContractor(data, e.getValue());
+		}
+		data.flush();
+		index.flip();
+		ByteBuffer records = ByteBuffer.wrap(bytes.toByteArray());
+
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.putInt(MAGIC).putInt(VERSION).putLong(Instant.now().toEpochMilli()).putInt(sorted.size())
+				.putInt(crc(index, 0, index.limit())).putInt(crc(records, 0, records.limit())).putInt(0);
+		header.flip();
+
+		Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+		try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+												StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer[] bufs = new ByteBuffer[] { header, index, records };
+			// header and index must also be written when there are no contractors
+			while (header.hasRemaining() || index.hasRemaining() || records.hasRemaining()) {
+				ch.write(bufs);
+			}
+			ch.force(true);
+		}
+		Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static int crc(ByteBuffer buf, int start, int end) {
+		ByteBuffer slice = buf.duplicate();
+		slice.position(start).limit(end);
+		CRC32 crc = new CRC32();
+		crc.update(slice);
+		return (int) crc.getValue();
+	}
+
+	private static void writeString(DataOutputStream out, String str) throws IOException {
+		if (str == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] b = str.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(b.length);
+		out.write(b);
+	}
+
+	private static String readString(ByteBuffer buf) {
+		int len = buf.getInt();
+		if (len < 0) {
+			return null;
+		}
+		if (len > buf.remaining()) {
+			throw new BufferUnderflowException();
+		}
+		byte[] b = new byte[len];
+		buf.get(b);
+		return new String(b, StandardCharsets.UTF_8);
+	}
+
+	private static void writeDate(DataOutputStream out, LocalDate date) throws IOException {
+		out.writeInt(date != null ? (int) date.toEpochDay() : NO_DATE);
+	}
+
+	private static LocalDate readDate(ByteBuffer buf) {
+		int days = buf.getInt();
+		return (days != NO_DATE) ? LocalDate.ofEpochDay(days) : null;
+	}
+
+	private static void writeContractor(DataOutputStream out, ContractorDAO c) throws IOException {
+		writeString(out, c.getCbeId());
+		writeString(out, c.getVatId());
+		writeString(out, c.getName());
+		writeString(out, c.getLicenseNo());
+		writeString(out, c.getStreet());
+		writeString(out, c.getPostalCode());
+		writeString(out, c.getMunicipality());
+		writeDate(out, c.getFromDate());
+		writeDate(out, c.getTillDate());
+		short[] catClasses = c.getCatClassCodes();
+		out.writeByte(catClasses.length);
+		for (short s: catClasses) {
+			out.writeShort(s);
+		}
+	}
+
+	private static ContractorDAO readContractor(ByteBuffer buf) {
+		ContractorDAO c = new ContractorDAO();
+		c.setCbeId(readString(buf));
+		c.setVatId(readString(buf));
+		c.setName(readString(buf));
+		c.setLicenseNo(readString(buf));
+		c.setStreet(readString(buf));
+		c.setPostalCode(readString(buf));
+		c.setMunicipality(readString(buf));
+		c.setFromDate(readDate(buf));
+		c.setTillDate(readDate(buf));
+		short[] catClasses = new short[buf.get() & 0xFF];
+		for (int i = 0; i < catClasses.length; i++) {
+			catClasses[i] = buf.getShort();
+		}
+		c.setCatClassCodes(catClasses);
+		return c;
+	}
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi;
+
+import be.fedict.demo.contractorapi.helper.ContractorDAO;
+import be.fedict.demo.contractorapi.helper.PageDAO;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable in-memory index of contractors sorted by expiry date (and enterprise ID).
+ * 
+ * Both are combined in one sort key (days since epoch * 10^10 + enterprise ID), so a date range is 
+ * a range of keys found by binary search. The key of the last contractor on a page is used as cursor.
+ * Contractors without expiry date are not indexed.
+ * 
+ * @author Bart Hanssens
+ */
+class ExpiryIndex {
+	private static final long ID_RANGE = 10_000_000_000L;
+
+	private final long[] keys;
+	private final ContractorDAO[] contractors;
+
+	/**
+	 * Build the index
+	 * 
+	 * @param all contractors
+	 */
+	ExpiryIndex(Collection<ContractorDAO> all) {
+		Map<Long, ContractorDAO> sorted = new TreeMap<>();
+		for (ContractorDAO contractor: all) {
+			LocalDate till = contractor.getTillDate();
+			String id = ContractorResource.normalize(contractor.getCbeId());
+			if (till != null && !id.isEmpty() && id.length() <= 10) {
+				sorted.put(key(till) + Long.parseLong(id), contractor);
+			}
+		}
+		keys = new long[sorted.size()];
+		contractors = new ContractorDAO[sorted.size()];
+
+		int i = 0;
+		for (Map.Entry<Long, ContractorDAO> e: sorted.entrySet()) {
+			keys[i] = e.getKey();
+			contractors[i] = e.getValue();
+			i++;
+		}
+	}
+
+	/**
+	 * Get the lowest key for a date
+	 * 
+	 * @param date date
+	 * @return key
+	 */
+	private static long key(LocalDate date) {
+		return date.toEpochDay() * ID_RANGE;
+	}
+
+	/**
+	 * Get the position of the first key greater than or equal to a key
+	 * 
+	 * @param key key
+	 * @return position
+	 */
+	private int position(long key) {
+		int pos = Arrays.binarySearch(keys, key);
+		return (pos >= 0) ? pos : -pos - 1;
+	}
+
+	int size() {
+		return keys.length;
+	}
+
+	/**
+	 * Get contractors expiring between two dates (inclusive), soonest first
+	 * 
+	 * @param from first date
+	 * @param till last date
+	 * @param cursor key of the last contractor of the previous page, or null
+	 * @param limit maximum number of contractors
+	 * @return page of contractors
+	 * @throws IllegalArgumentException when the cursor is not valid
+	 */
+	PageDAO expiring(LocalDate from, LocalDate till, String cursor, int limit) {
+		long low = key(from);
+		if (cursor != null && !cursor.isEmpty()) {
+			try {
+				low = Math.max(low, Long.parseLong(cursor) + 1);
+			} catch (NumberFormatException nfe) {
+				throw new IllegalArgumentException("Invalid cursor");
+			}
+		}
+		int start = position(low);
+		int end = position(key(till.plusDays(1)));
+
+		List<ContractorDAO> page = new ArrayList<>(Math.max(0, Math.min(limit, end - start)));
+		for (int i = start; i < end && page.size() < limit; i++) {
+			page.add(contractors[i]);
+		}
+
+		PageDAO dao = new PageDAO();
+		dao.setContractors(page);
+		// only set a cursor if there is at least one more result
+		if (start + page.size() < end && !page.isEmpty()) {
+			dao.setNext(String.valueOf(keys[start + page.size() - 1]));
+		}
+		return dao;
+	}
+}
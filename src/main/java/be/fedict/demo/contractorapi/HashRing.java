@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable consistent hash ring, assigning keys to nodes.
+ * 
+ * Each node is placed on the ring a number of times (virtual nodes), a key belongs to the first node 
+ * at or after the hash of the key. Adding or removing a node only moves the keys of that node.
+ * 
+ * @author Bart Hanssens
+ */
+class HashRing {
+	private final long[] points;
+	private final String[] nodes;
+
+	/**
+	 * Build the ring
+	 * 
+	 * @param all nodes
+	 * @param replicas number of virtual nodes per node
+	 */
+	HashRing(Collection<String> all, int replicas) {
+		Map<Long, String> sorted = new TreeMap<>();
+		for (String node: all) {
+			for (int i = 0; i < replicas; i++) {
+				sorted.putIfAbsent(hash(node + "#" + i), node);
+			}
+		}
+		points = new long[sorted.size()];
+		nodes = new String[sorted.size()];
+
+		int i = 0;
+		for (Map.Entry<Long, String> e: sorted.entrySet()) {
+			points[i] = e.getKey();
+			nodes[i] = e.getValue();
+			i++;
+		}
+	}
+
+	/**
+	 * Hash a string, using the first 8 bytes of the MD5 digest so the result is the same on every node
+	 * 
+	 * @param str string
+	 * @return hash
+	 */
+	static long hash(String str) {
+		try {
+			byte[] digest = MessageDigest.getInstance("MD5").digest(str.getBytes(StandardCharsets.UTF_8));
+			long h = 0;
+			for (int i = 0; i < 8; i++) {
+				h = (h << 8) | (digest[i] & 0xFF);
+			}
+			return h;
+		} catch (NoSuchAlgorithmException nsae) {
+			throw new IllegalStateException(nsae);
+		}
+	}
+
+	/**
+	 * Get the node a key belongs to
+	 * 
+	 * @param key key
+	 * @return node or null when there are no nodes
+	 */
+	String owner(String key) {
+		if (points.length == 0) {
+			return null;
+		}
+		int pos = Arrays.binarySearch(points, hash(key));
+		if (pos < 0) {
+			pos = -pos - 1;
+		}
+		return nodes[(pos < points.length) ? pos : 0];
+	}
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi;
+
+import be.fedict.demo.contractorapi.helper.StageMetrics;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.config.Registry;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * Connection pool keeping track of the time spent waiting for a connection, 
+ * and the number of new connections compared to the number of leased connections.
+ * 
+ * @author Bart Hanssens
+ */
+class InstrumentedConnectionManager extends PoolingHttpClientConnectionManager {
+	private final LongAdder leases = new LongAdder();
+	private final LongAdder connects = new LongAdder();
+
+	/**
+	 * Constructor
+	 * 
+	 * @param registry socket factories
+	 * @param ttl maximum time to live of a connection, in milliseconds
+	 */
+	InstrumentedConnectionManager(Registry<ConnectionSocketFactory> registry, long ttl) {
+		super(registry, null, null, null, ttl, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Get the number of connections leased from the pool
+	 * 
+	 * @return number of leases
+	 */
+	long getLeases() {
+		return leases.sum();
+	}
+
+	/**
+	 * Get the number of new connections, i.e. leases that could not reuse a connection
+	 * 
+	 * @return number of new connections
+	 */
+	long getConnects() {
+		return connects.sum();
+	}
+
+	@Override
+	public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+		ConnectionRequest request = super.requestConnection(route, state);
+		return new ConnectionRequest() {
+			@Override
+			public HttpClientConnection get(long timeout, TimeUnit unit) 
+					throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+				long start = System.nanoTime();
+				try {
+					HttpClientConnection conn = request.get(timeout, unit);
+					leases.increment();
+					return conn;
+				} finally {
+					StageMetrics.timer(StageMetrics.POOL_WAIT).update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+				}
+			}
+
+			@Override
+			public boolean cancel() {
+				return request.cancel();
+			}
+		};
+	}
+
+	@Override
+	public void connect(HttpClientConnection conn, HttpRoute route, int timeout, HttpContext context) 
+			throws IOException {
+		connects.increment();
+		super.connect(conn, route, timeout, context);
+	}
+}
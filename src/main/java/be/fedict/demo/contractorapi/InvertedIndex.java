@@ -0,0 +1,278 @@
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi;
+
+import be.fedict.demo.contractorapi.helper.CatClasses;
+import be.fedict.demo.contractorapi.helper.ContractorDAO;
+import be.fedict.demo.contractorapi.helper.PageDAO;
+import be.fedict.demo.contractorapi.helper.QueryDAO;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Immutable in-memory inverted indexes on category / class, postal code and municipality.
+ * 
+ * Contractors are numbered in order of enterprise ID, each index maps a value to the set of numbers.
+ * Criteria are combined by intersecting these sets, validity dates are checked while iterating over the result.
+ * The enterprise ID of the last contractor on a page is used as cursor for the next page.
+ * 
+ * @author Bart Hanssens
+ */
+class InvertedIndex {
+	private static final int NO_DATE = Integer.MIN_VALUE;
+
+	private final long[] ids;
+	private final ContractorDAO[] contractors;
+	private final int[] fromDays;
+	private final int[] tillDays;
+
+	// category -> set per class
+	private final Map<Integer, BitSet[]> categories = new HashMap<>();
+	private final NavigableMap<Integer, BitSet> postalCodes = new TreeMap<>();
+	private final Map<String, BitSet> municipalities = new HashMap<>();
+
+	/**
+	 * Normalize municipality for case-insensitive matching
+	 * 
+	 * @param str municipality
+	 * @return normalized string
+	 */
+	static String normalizeMunicipality(String str) {
+		return str.trim().toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * Parse postal code
+	 * 
+	 * @param str postal code
+	 * @return numeric postal code or -1
+	 */
+	private static int postalCode(String str) {
+		if (str == null || str.isEmpty() || str.length() > 9) {
+			return -1;
+		}
+		int n = 0;
+		for (int i = 0; i < str.length(); i++) {
+			char c = str.charAt(i);
+			if (c < '0' || c > '9') {
+				return -1;
+			}
+			n = n * 10 + (c - '0');
+		}
+		return n;
+	}
+
+	private static int toDays(LocalDate date) {
+		return (date != null) ? (int) date.toEpochDay() : NO_DATE;
+	}
+
+	/**
+	 * Build the indexes
+	 * 
+	 * @param all contractors
+	 */
+	InvertedIndex(Collection<ContractorDAO> all) {
+		Map<Long, ContractorDAO> sorted = new TreeMap<>();
+		for (ContractorDAO contractor: all) {
+			String id = ContractorResource.normalize(contractor.getCbeId());
+			if (!id.isEmpty() && id.length() < 19) {
+				sorted.put(Long.parseLong(id), contractor);
+			}
+		}
+
+		int size = sorted.size();
+		ids = new long[size];
+		contractors = new ContractorDAO[size];
+		fromDays = new int[size];
+		tillDays = new int[size];
+
+		int doc = 0;
+		for (Map.Entry<Long, ContractorDAO> e: sorted.entrySet()) {
+			ContractorDAO c = e.getValue();
+			ids[doc] = e.getKey();
+			contractors[doc] = c;
+			fromDays[doc] = toDays(c.getFromDate());
+			tillDays[doc] = toDays(c.getTillDate());
+
+			for (short s: c.getCatClassCodes()) {
+				BitSet[] classes = categories.computeIfAbsent(CatClasses.categoryOf(s), k -> new BitSet[10]);
+				int cls = CatClasses.classOf(s);
+				if (classes[cls] == null) {
+					classes[cls] = new BitSet();
+				}
+				classes[cls].set(doc);
+			}
+			int postal = postalCode(c.getPostalCode());
+			if (postal >= 0) {
+				postalCodes.computeIfAbsent(postal, k -> new BitSet()).set(doc);
+			}
+			if (c.getMunicipality() != null && !c.getMunicipality().isEmpty()) {
+				municipalities.computeIfAbsent(normalizeMunicipality(c.getMunicipality()), k -> new BitSet()).set(doc);
+			}
+			doc++;
+		}
+	}
+
+	/**
+	 * Get number of contractors in the index
+	 * 
+	 * @return number of contractors
+	 */
+	int size() {
+		return ids.length;
+	}
+
+	/**
+	 * Intersect the result with another set
+	 * 
+	 * @param result current result or null when no criteria were used yet
+	 * @param bits set
+	 * @return intersection
+	 */
+	private static BitSet and(BitSet result, BitSet bits) {
+		if (result == null) {
+			return (BitSet) bits.clone();
+		}
+		result.and(bits);
+		return result;
+	}
+
+	private BitSet byCategory(int cat, int minClass) {
+		BitSet bits = new BitSet();
+		BitSet[] classes = categories.get(cat);
+		if (classes != null) {
+			for (int i = minClass; i < classes.length; i++) {
+				if (classes[i] != null) {
+					bits.or(classes[i]);
+				}
+			}
+		}
+		return bits;
+	}
+
+	private BitSet byPostalCode(int from, int to) {
+		BitSet bits = new BitSet();
+		if (from <= to) {
+			for (BitSet b: postalCodes.subMap(from, true, to, true).values()) {
+				bits.or(b);
+			}
+		}
+		return bits;
+	}
+
+	private boolean isValid(int doc, int day) {
+		return (fromDays[doc] == NO_DATE || fromDays[doc] <= day) 
+				&& (tillDays[doc] == NO_DATE || tillDays[doc] >= day);
+	}
+
+	/**
+	 * Get the first contractor after the cursor
+	 * 
+	 * @param cursor enterprise ID of the last contractor of the previous page, or null
+	 * @return position in the index
+	 * @throws IllegalArgumentException when the cursor is not valid
+	 */
+	private int start(String cursor) {
+		if (cursor == null || cursor.isEmpty()) {
+			return 0;
+		}
+		String id = ContractorResource.normalize(cursor);
+		if (id.isEmpty() || id.length() > 18) {
+			throw new IllegalArgumentException("Invalid cursor");
+		}
+		int pos = Arrays.binarySearch(ids, Long.parseLong(id));
+		return (pos >= 0) ? pos + 1 : -pos - 1;
+	}
+
+	/**
+	 * Search contractors
+	 * 
+	 * @param query search criteria
+	 * @return page of contractors
+	 * @throws IllegalArgumentException when criteria are not valid
+	 */
+	PageDAO search(QueryDAO query) {
+		BitSet result = null;
+
+		if (query.getCategory() != null) {
+			int cat = CatClasses.encode(query.getCategory().trim().toUpperCase(Locale.ROOT));
+			if (cat < 0) {
+				throw new IllegalArgumentException("Invalid category");
+			}
+			int minClass = (query.getMinClass() != null) ? query.getMinClass() : 0;
+			if (minClass < 0 || minClass > 9) {
+				throw new IllegalArgumentException("Invalid class");
+			}
+			result = and(result, byCategory(cat, minClass));
+		} else if (query.getMinClass() != null) {
+			throw new IllegalArgumentException("Class requires a category");
+		}
+		if (query.getPostalFrom() != null || query.getPostalTo() != null) {
+			int from = (query.getPostalFrom() != null) ? query.getPostalFrom() : 0;
+			int to = (query.getPostalTo() != null) ? query.getPostalTo() : Integer.MAX_VALUE;
+			result = and(result, byPostalCode(from, to));
+		}
+		if (query.getMunicipality() != null) {
+			BitSet bits = municipalities.get(normalizeMunicipality(query.getMunicipality()));
+			result = and(result, (bits != null) ? bits : new BitSet());
+		}
+
+		int day = toDays(query.getValidOn());
+		int limit = query.getLimit();
+		List<ContractorDAO> page = new ArrayList<>(Math.min(limit, 100));
+		int last = -1;
+
+		int doc = (result == null) ? start(query.getCursor()) : result.nextSetBit(start(query.getCursor()));
+		while (doc >= 0 && doc < ids.length) {
+			if (day == NO_DATE || isValid(doc, day)) {
+				if (page.size() == limit) {
+					break;
+				}
+				page.add(contractors[doc]);
+				last = doc;
+			}
+			doc = (result == null) ? doc + 1 : result.nextSetBit(doc + 1);
+		}
+
+		PageDAO dao = new PageDAO();
+		dao.setContractors(page);
+		// only set a cursor if there is at least one more result
+		if (doc >= 0 && doc < ids.length && last >= 0) {
+			dao.setNext(String.valueOf(ids[last]));
+		}
+		return dao;
+	}
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi;
+
+import be.fedict.demo.contractorapi.helper.ContractorDAO;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable in-memory index on the names of contractors, for prefix and typo-tolerant search.
+ * 
+ * Names are split into words without accents and in lowercase. 
+ * The sorted list of unique words is used for exact and prefix matches, trigrams of the words for 
+ * finding similar words (edit distance of 1 or 2).
+ * Every word of the query must match a word of the name, results are ranked by quality of the matches.
+ * 
+ * @author Bart Hanssens
+ */
+class NameIndex {
+	private static final int EXACT = 4;
+	private static final int PREFIX = 2;
+	private static final int FUZZY = 1;
+
+	private final ContractorDAO[] contractors;
+	private final String[] words;
+	private final int[][] postings;
+	private final Map<String, int[]> trigrams = new HashMap<>();
+
+	/**
+	 * Remove accents and dots, convert to lowercase and split into words
+	 * 
+	 * @param str string
+	 * @return array of words
+	 */
+	static String[] words(String str) {
+		if (str == null) {
+			return new String[0];
+		}
+		String norm = Normalizer.normalize(str, Normalizer.Form.NFD);
+		StringBuilder sb = new StringBuilder(norm.length());
+		for (int i = 0; i < norm.length(); i++) {
+			char c = norm.charAt(i);
+			// also keep abbreviations like "B.V." together
+			if (Character.getType(c) == Character.NON_SPACING_MARK || c == '.' || c == '\'') {
+				continue;
+			}
+			sb.append(Character.isLetterOrDigit(c) ? Character.toLowerCase(c) : ' ');
+		}
+		String s = sb.toString().trim();
+		return s.isEmpty() ? new String[0] : s.split(" +");
+	}
+
+	private static List<String> trigrams(String word) {
+		String padded = "$" + word + "$";
+		List<String> list = new ArrayList<>(padded.length());
+		for (int i = 0; i + 3 <= padded.length(); i++) {
+			list.add(padded.substring(i, i + 3));
+		}
+		return list;
+	}
+
+	/**
+	 * Levenshtein distance, giving up when the distance gets larger than the maximum
+	 * 
+	 * @param a first word
+	 * @param b second word
+	 * @param max maximum distance
+	 * @return distance or max + 1
+	 */
+	static int distance(String a, String b, int max) {
+		if (Math.abs(a.length() - b.length()) > max) {
+			return max + 1;
+		}
+		int[] prev = new int[b.length() + 1];
+		int[] cur = new int[b.length() + 1];
+		for (int j = 0; j <= b.length(); j++) {
+			prev[j] = j;
+		}
+		for (int i = 1; i <= a.length(); i++) {
+			cur[0] = i;
+			int best = i;
+			for (int j = 1; j <= b.length(); j++) {
+				int cost = (a.charAt(i - 1) == b.charAt(j - 1)) ? 0 : 1;
+				cur[j] = Math.min(Math.min(cur[j - 1] + 1, prev[j] + 1), prev[j - 1] + cost);
+				best = Math.min(best, cur[j]);
+			}
+			if (best > max) {
+				return max + 1;
+			}
+			int[] tmp = prev;
+			prev = cur;
+			cur = tmp;
+		}
+		return Math.min(prev[b.length()], max + 1);
+	}
+
+	/**
+	 * Build the index
+	 * 
+	 * @param all contractors
+	 */
+	NameIndex(Collection<ContractorDAO> all) {
+		contractors = all.toArray(new ContractorDAO[0]);
+
+		Map<String, List<Integer>> map = new TreeMap<>();
+		for (int doc = 0; doc < contractors.length; doc++) {
+			for (String word: words(contractors[doc].getName())) {
+				List<Integer> docs = map.computeIfAbsent(word, k -> new ArrayList<>());
+				if (docs.isEmpty() || docs.get(docs.size() - 1) != doc) {
+					docs.add(doc);
+				}
+			}
+		}
+
+		words = map.keySet().toArray(new String[0]);
+		postings = new int[words.length][];
+		Map<String, List<Integer>> grams = new HashMap<>();
+		for (int i = 0; i < words.length; i++) {
+			postings[i] = map.get(words[i]).stream().mapToInt(Integer::intValue).toArray();
+			for (String gram: trigrams(words[i])) {
+				List<Integer> list = grams.computeIfAbsent(gram, k -> new ArrayList<>());
+				if (list.isEmpty() || list.get(list.size() - 1) != i) {
+					list.add(i);
+				}
+			}
+		}
+		for (Map.Entry<String, List<Integer>> e: grams.entrySet()) {
+			trigrams.put(e.getKey(), e.getValue().stream().mapToInt(Integer::intValue).toArray());
+		}
+	}
+
+	/**
+	 * Find the words matching a word of the query
+	 * 
+	 * @param word word of the query
+	 * @param prefix true if word may be a prefix
+	 * @return position of the word in the dictionary as key, score as value
+	 */
+	private Map<Integer, Integer> match(String word, boolean prefix) {
+		Map<Integer, Integer> matches = new HashMap<>();
+
+		int pos = Arrays.binarySearch(words, word);
+		int start = (pos >= 0) ? pos : -pos - 1;
+		if (pos >= 0) {
+			matches.put(pos, EXACT);
+			start++;
+		}
+		if (prefix) {
+			for (int i = start; i < words.length && words[i].startsWith(word); i++) {
+				matches.put(i, PREFIX);
+			}
+		}
+
+		// typos: only for longer words, allowing 1 or 2 edits
+		if (word.length() >= 4) {
+			int max = (word.length() <= 6) ? 1 : 2;
+			Map<Integer, Integer> shared = new HashMap<>();
+			for (String gram: trigrams(word)) {
+				for (int i: trigrams.getOrDefault(gram, new int[0])) {
+					shared.merge(i, 1, Integer::sum);
+				}
+			}
+			// each edit changes at most 3 trigrams
+			int needed = word.length() - 3 * max;
+			for (Map.Entry<Integer, Integer> e: shared.entrySet()) {
+				int i = e.getKey();
+				if (e.getValue() >= needed && !matches.containsKey(i) && distance(word, words[i], max) <= max) {
+					matches.put(i, FUZZY);
+				}
+			}
+		}
+		return matches;
+	}
+
+	/**
+	 * Search contractors by name
+	 * 
+	 * @param query (part of) the name
+	 * @param limit maximum number of results
+	 * @return contractors, best matches first
+	 */
+	List<ContractorDAO> search(String query, int limit) {
+		String[] terms = words(query);
+		if (terms.length == 0) {
+			return new ArrayList<>();
+		}
+
+		Map<Integer, Integer> scores = null;
+		for (int t = 0; t < terms.length; t++) {
+			// only the last word is treated as prefix, as it may not be complete yet
+			Map<Integer, Integer> matches = match(terms[t], t == terms.length - 1);
+
+			Map<Integer, Integer> docs = new HashMap<>();
+			for (Map.Entry<Integer, Integer> e: matches.entrySet()) {
+				for (int doc: postings[e.getKey()]) {
+					if (scores == null || scores.containsKey(doc)) {
+						docs.merge(doc, e.getValue(), Math::max);
+					}
+				}
+			}
+			if (scores != null) {
+				for (Map.Entry<Integer, Integer> e: docs.entrySet()) {
+					e.setValue(e.getValue() + scores.get(e.getKey()));
+				}
+			}
+			scores = docs;
+			if (scores.isEmpty()) {
+				break;
+			}
+		}
+
+		Map<Integer, Integer> ranked = scores;
+		Comparator<Integer> order = Comparator.<Integer>comparingInt(ranked::get).reversed()
+			.thenComparingInt(doc -> contractors[doc].getName().length())
+			.thenComparing(doc -> contractors[doc].getCbeId(), Comparator.nullsLast(Comparator.naturalOrder()));
+
+		List<ContractorDAO> result = new ArrayList<>(Math.min(limit, ranked.size()));
+		ranked.keySet().stream().sorted(order).limit(limit).forEach(doc -> result.add(contractors[doc]));
+		return result;
+	}
+
+	int size() {
+		return contractors.length;
+	}
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi;
+
+import be.fedict.demo.contractorapi.helper.ContractorDAO;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.json.bind.Jsonb;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.StreamingOutput;
+
+/**
+ * Writes contractors as newline-delimited JSON, one contractor at a time, so memory use does not depend on 
+ * the number of contractors. A slow client blocks the writer (and thus the iteration over the contractors).
+ * 
+ * @author Bart Hanssens
+ */
+class NdjsonExport implements StreamingOutput {
+	public static final String APPLICATION_NDJSON = "application/x-ndjson";
+
+	private static final int BUFFER_SIZE = 16 * 1024;
+
+	private final Stream<ContractorDAO> contractors;
+	private final Jsonb jsonb;
+	private final boolean gzip;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param contractors contractors, evaluated lazily
+	 * @param jsonb JSON-B serializer
+	 * @param gzip compress output
+	 */
+	NdjsonExport(Stream<ContractorDAO> contractors, Jsonb jsonb, boolean gzip) {
+		this.contractors = contractors;
+		this.jsonb = jsonb;
+		this.gzip = gzip;
+	}
+
+	@Override
+	public void write(OutputStream out) throws IOException, WebApplicationException {
+		OutputStream os = gzip ? new GZIPOutputStream(out, BUFFER_SIZE) : new BufferedOutputStream(out, BUFFER_SIZE);
+		Writer w = new OutputStreamWriter(os, StandardCharsets.UTF_8);
+
+		try (Stream<ContractorDAO> s = contractors) {
+			Iterator<ContractorDAO> it = s.iterator();
+			while (it.hasNext()) {
+				// serialize to a string, the JSON-B writer methods close the stream
+				w.write(jsonb.toJson(it.next()));
+				w.write('\n');
+			}
+		}
+		w.flush();
+		if (gzip) {
+			((GZIPOutputStream) os).finish();
+		}
+		os.flush();
+	}
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi;
+
+import be.fedict.demo.contractorapi.helper.ContractorDAO;
+import be.fedict.demo.contractorapi.helper.Futures;
+import be.fedict.demo.contractorapi.helper.StageMetrics;
+import be.fedict.demo.contractorapi.helper.StaleContractorDAO;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.ws.rs.NotFoundException;
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.rest.client.RestClientBuilder;
+
+import org.jboss.logging.Logger;
+
+/**
+ * Share the cache between instances of this API.
+ * 
+ * Every instance uses the same static list of peers, and each enterprise ID is owned by one peer 
+ * selected by consistent hashing. Lookups for IDs owned by another peer are forwarded to that peer,
+ * so each contractor is only retrieved once from the webform.
+ * When a peer can't be reached, it is skipped for some time and the lookup is done locally.
+ * 
+ * @author Bart Hanssens
+ */
+@ApplicationScoped
+public class PeerLookup {
+	private static final Logger LOG = Logger.getLogger(PeerLookup.class);
+
+	public static final String FORWARDED = "X-Contractor-Peer";
+	public static final String AGE = "Age";
+
+	public static final String FORWARDS = "peer.forwards";
+	public static final String FALLBACKS = "peer.fallbacks";
+
+	@ConfigProperty(name = "contractorapi.peers.self")
+	Optional<String> self;
+
+	@ConfigProperty(name = "contractorapi.peers.urls")
+	Optional<List<String>> urls;
+
+	@ConfigProperty(name = "contractorapi.peers.replicas", defaultValue = "100")
+	int replicas;
+
+	@ConfigProperty(name = "contractorapi.peers.timeout", defaultValue = "PT2S")
+	Duration timeout;
+
+	@ConfigProperty(name = "contractorapi.peers.retry", defaultValue = "PT30S")
+	Duration retry;
+
+	private HashRing ring = new HashRing(Collections.emptyList(), 0);
+	private final Map<String, Peer> clients = new HashMap<>();
+	private final Map<String, Long> down = new ConcurrentHashMap<>();
+
+	/**
+	 * Remove trailing slash from a URL
+	 * 
+	 * @param url URL
+	 * @return URL without trailing slash
+	 */
+	private static String strip(String url) {
+		url = url.trim();
+		return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+	}
+
+	@PostConstruct
+	void init() {
+		if (!self.isPresent() || !urls.isPresent()) {
+			return;
+		}
+		String me = strip(self.get());
+		Set<String> nodes = new LinkedHashSet<>();
+		nodes.add(me);
+		for (String url: urls.get()) {
+			nodes.add(strip(url));
+		}
+		for (String node: nodes) {
+			if (!node.equals(me)) {
+				clients.put(node, RestClientBuilder.newBuilder()
+									.baseUri(URI.create(node))
+									.connectTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+									.readTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+									// status codes are handled below
+									.property("microprofile.rest.client.disable.default.mapper", true)
+									.build(Peer.class));
+			}
+		}
+		ring = new HashRing(nodes, replicas);
+		LOG.infof("Sharing cache with %d peers", clients.size());
+	}
+
+	public boolean isEnabled() {
+		return !clients.isEmpty();
+	}
+
+	/**
+	 * Get the peer owning an enterprise ID
+	 * 
+	 * @param id normalized enterprise ID
+	 * @return URL of the peer, or null if this instance is the owner
+	 */
+	String owner(String id) {
+		String owner = ring.owner(id);
+		return clients.containsKey(owner) ? owner : null;
+	}
+
+	/**
+	 * Check if a peer was unreachable recently
+	 * 
+	 * @param peer URL of the peer
+	 * @return true if it should be skipped
+	 */
+	private boolean isDown(String peer) {
+		Long until = down.get(peer);
+		if (until == null) {
+			return false;
+		}
+		if (System.nanoTime() - until >= 0) {
+			down.remove(peer, until);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Read the contractor from the response of a peer.
+	 * Stale data is returned as such: the owner could not refresh it either, so asking the webform again 
+	 * would only add load. A peer that is too busy asks the client to retry later.
+	 * 
+	 * @param response response
+	 * @return contractor
+	 */
+	static ContractorDAO read(Response response) {
+		try {
+			int status = response.getStatus();
+			if (status == Response.Status.NOT_FOUND.getStatusCode()) {
+				// same exception as a "not found" from the webform, so it is cached in the same way
+				throw new ProcessingException(new NotFoundException("Contractor not found"));
+			}
+			if (status == Response.Status.SERVICE_UNAVAILABLE.getStatusCode()) {
+				throw new WebApplicationException("Peer unavailable, retry later", 
+					Response.status(status)
+						.header(HttpHeaders.RETRY_AFTER, response.getHeaderString(HttpHeaders.RETRY_AFTER))
+						.build());
+			}
+			if (status != Response.Status.OK.getStatusCode()) {
+				throw new ProcessingException("Peer returned status " + status);
+			}
+			ContractorDAO contractor = response.readEntity(ContractorDAO.class);
+			String cc = response.getHeaderString(HttpHeaders.CACHE_CONTROL);
+			if (cc != null && CacheControl.valueOf(cc).getMaxAge() == 0) {
+				String age = response.getHeaderString(AGE);
+				return new StaleContractorDAO(contractor, (age != null) ? Long.parseLong(age) : 0);
+			}
+			return contractor;
+		} finally {
+			response.close();
+		}
+	}
+
+	/**
+	 * Get a contractor from the peer owning the enterprise ID, or using the local loader when this instance
+	 * is the owner or the peer can't be reached.
+	 * 
+	 * @param id normalized enterprise ID
+	 * @param local local loader
+	 * @return contractor
+	 */
+	public CompletionStage<ContractorDAO> get(String id, Function<String, CompletionStage<ContractorDAO>> local) {
+		String peer = owner(id);
+		if (peer == null) {
+			return local.apply(id);
+		}
+		if (isDown(peer)) {
+			StageMetrics.count(FALLBACKS);
+			return local.apply(id);
+		}
+		StageMetrics.count(FORWARDS);
+		return clients.get(peer).getContractorById(id, strip(self.get()))
+			.thenApply(PeerLookup::read)
+			.handle((contractor, t) -> {
+				if (t == null) {
+					return CompletableFuture.completedFuture(contractor);
+				}
+				// only look up locally when the owner could not be reached, other errors are the answer
+				if (!Futures.causedBy(t, IOException.class)) {
+					return CompletableFuture.<ContractorDAO>failedFuture(Futures.unwrap(t));
+				}
+				down.put(peer, System.nanoTime() + retry.toNanos());
+				LOG.warnf("Peer %s unreachable, skipped for %s", peer, retry);
+				StageMetrics.count(FALLBACKS);
+				return local.apply(id);
+			})
+			.thenCompose(Function.identity());
+	}
+}
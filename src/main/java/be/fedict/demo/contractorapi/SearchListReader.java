@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi;
+
+import be.fedict.demo.contractorapi.helper.ContractorDAO;
+import be.fedict.demo.contractorapi.helper.StageMetrics;
+import be.fedict.demo.contractorapi.helper.TableDAO;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.Provider;
+
+import org.eclipse.microprofile.metrics.Timer;
+
+/**
+ * Parse a search result or a page of search results with zero or more rows, and convert it into a list.
+ * Rows are converted into contractors one by one while parsing.
+ * 
+ * @author Bart Hanssens
+ */
+@Provider
+@Consumes(MediaType.TEXT_XML)
+public class SearchListReader implements MessageBodyReader<List<ContractorDAO>> {
+	private final SearchResultReader reader;
+
+	/**
+	 * Constructor
+	 */
+	public SearchListReader() {
+		this(new SearchResultReader());
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param reader reader for parsing the table
+	 */
+	SearchListReader(SearchResultReader reader) {
+		this.reader = reader;
+	}
+
+	@Override
+	public boolean isReadable(Class<?> type, Type genericType, Annotation[] antns, MediaType mt) {
+		if (!List.class.isAssignableFrom(type) || !(genericType instanceof ParameterizedType)) {
+			return false;
+		}
+		Type[] args = ((ParameterizedType) genericType).getActualTypeArguments();
+		return args.length == 1 && args[0].equals(ContractorDAO.class);
+	}
+
+	@Override
+	public List<ContractorDAO> readFrom(Class<List<ContractorDAO>> type, Type genericType, Annotation[] antns, 
+					MediaType mt, MultivaluedMap<String, String> headers, InputStream in) 
+					throws IOException, WebApplicationException {
+		List<ContractorDAO> contractors = new ArrayList<>();
+		TableDAO table;
+		Timer.Context ctx = StageMetrics.timer(StageMetrics.PARSE_RESULT).time();
+		try {
+			// convert each row while parsing
+			table = reader.parseRows(in, row -> {
+				if (!SearchResultReader.isNotFound(row)) {
+					contractors.add(SearchResultReader.toContractor(row));
+				}
+			});
+		} finally {
+			ctx.stop();
+		}
+		// pages following the first one do not have a header
+		SearchResultReader.checkTable(table, false);
+		return contractors;
+	}
+}
@@ -1,167 +1,277 @@
-/*
- * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
- * All rights reserved.
- *
- * Redistribution and use in source and binary forms, with or without
- * modification, are permitted provided that the following conditions are met:
- *
- * * Redistributions of source code must retain the above copyright notice, this
- *   list of conditions and the following disclaimer.
- * * Redistributions in binary form must reproduce the above copyright notice,
- *   this list of conditions and the following disclaimer in the documentation
- *   and/or other materials provided with the distribution.
- *
- * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
- * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
- * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
- * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
- * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
- * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
- * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
- * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
- * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
- * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
- * POSSIBILITY OF SUCH DAMAGE.
- */
-package be.fedict.demo.contractorapi;
-
-import be.fedict.demo.contractorapi.helper.ContractorDAO;
-import java.io.IOException;
-import java.io.InputStream;
-import java.lang.annotation.Annotation;
-import java.lang.reflect.Type;
-import java.nio.charset.StandardCharsets;
-import java.text.ParseException;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
-
-import javax.ws.rs.Consumes;
-import javax.ws.rs.NotFoundException;
-import javax.ws.rs.WebApplicationException;
-import javax.ws.rs.core.MediaType;
-import javax.ws.rs.core.MultivaluedMap;
-import javax.ws.rs.ext.MessageBodyReader;
-import javax.ws.rs.ext.Provider;
-
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.parser.Parser;
-import org.jsoup.select.Elements;
-
-/**
- * Parse the search result and convert it into an object. 
- * Note that the result is not a full HTML page, but an HTML table embedded in XML which is normally rendered by a browser.
- * 
- * @author Bart Hanssens
- * @see <a href="https://economie.fgov.be/nl/themas/ondernemingen/specifieke-sectoren/kwaliteit-de-bouw/erkenning-van-aannemers">erkenning van aannemers website</a>
- */
-@Provider
-@Consumes(MediaType.TEXT_XML)
-public class SearchResultReader implements MessageBodyReader<ContractorDAO> {
-	private static final String HEADERS = "KBO nummer,BTW nummer,aannemer,Erkenningsnummer,straat,Postcode,Gemeente,Beslissingsdatum,vervaldatum,categorie klassen";
-	private static final Pattern CLASSCATS = Pattern.compile("([A-Z]\\d{0,2}) \\((\\d)\\) ?");
-
-	@Override
-	public boolean isReadable(Class<?> type, Type genericType, Annotation[] antns, MediaType mt) {
-		return genericType.equals(ContractorDAO.class);
-	}
-
-	@Override
-	public ContractorDAO readFrom(Class<ContractorDAO> type, Type genericType, Annotation[] antns, MediaType mt, 
-									MultivaluedMap<String, String> headers, InputStream in) throws IOException, WebApplicationException {
-		return parseOrganization(in);
-	}
-	
-	/**
-	 * Convert the list of contractor categories and classes to a map.
-	 * 
-	 * @param str categories as string
-	 * @return map with category as key and class as value
-	 */
-	private Map<String, String> mapToClassCats(String str) {
-		Matcher match = CLASSCATS.matcher(str);
-		Map<String, String> map = new HashMap();
-		while (match.find()) {
-			map.put(match.group(1), match.group(2));
-		}
-		return map;
-	}
-
-	/**
-	 * Parse the XML response which contains an HTML table with exactly 1 row if a result was found, or an empty table.
-	 * 
-	 * @param xml
-	 * @return
-	 * @throws IOException 
-	 */
-	private ContractorDAO parseOrganization(InputStream xml) throws IOException, WebApplicationException {
-		ContractorDAO contractor = new ContractorDAO();
-
-		Document xmlDoc = Jsoup.parse(xml, StandardCharsets.UTF_8.toString(), "", Parser.xmlParser());
-		if (xmlDoc == null) {
-			throw new WebApplicationException("Could not process XML update response");
-		}
-
-		Elements updates = xmlDoc.select("update");
-		if (updates == null || updates.isEmpty()){
-			throw new WebApplicationException("No update element found");
-		}
-		String cdata = updates.first().text();
-		Document doc = Jsoup.parse(cdata);
-		if (doc == null) {
-			throw new WebApplicationException("Could not process partial HTML");
-		}
-
-		Elements headrow = doc.select("thead[id='mainForm:dataTab_head'] tr");
-		if (headrow == null || headrow.size() != 1) {
-			throw new WebApplicationException("No header row");
-		}
-
-		Elements headers = headrow.select("th span[class='ui-column-title']");
-		if (headers == null || headers.isEmpty()) {
-			throw new WebApplicationException("No headers in table");
-		}
-
-		// check if returned table headers match expected headers 
-		String collected = headers.stream().map(Element::text).collect(Collectors.joining(","));
-		if (HEADERS.compareToIgnoreCase(collected) != 0) {
-			throw new WebApplicationException("Unknown headers");			
-		}
-
-		Elements rows = doc.select("tbody[id='mainForm:dataTab_data'] tr");
-		if (rows == null || rows.size() != 1) {
-			throw new WebApplicationException("Expected exactly 1 result");
-		}
-
-		Element row = rows.first();
-		Elements columns = row.getElementsByTag("td");
-		// a "not found" with colspan 10 will be returned when there is no search result
-		if (columns == null || columns.size() == 1) {
-			throw new NotFoundException("Not found");
-		}
-
-		if (columns.size() != 10) {
-			throw new WebApplicationException("Expected 10 columns in result");			
-		}
-		contractor.setCbeId(columns.get(0).text().replace("ui-button", ""));
-		contractor.setVatId(columns.get(1).text());
-		contractor.setName(columns.get(2).text());
-		contractor.setLicenseNo(columns.get(3).text());
-		contractor.setStreet(columns.get(4).text());
-		contractor.setPostalCode(columns.get(5).text());
-		contractor.setMunicipality(columns.get(6).text());
-		try {
-			contractor.setFromDate(columns.get(7).text());
-			contractor.setTillDate(columns.get(8).text());
-		} catch (ParseException pe) {
-			throw new WebApplicationException("Error parsing date");
-		}
-		contractor.setCatClasses(mapToClassCats(columns.get(9).text()));
-
-		return contractor;
-	}
-}
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi;
+
+import be.fedict.demo.contractorapi.helper.CatClasses;
+import be.fedict.demo.contractorapi.helper.ContractorDAO;
+import be.fedict.demo.contractorapi.helper.SessionExpiredException;
+import be.fedict.demo.contractorapi.helper.StageMetrics;
+import be.fedict.demo.contractorapi.helper.TableDAO;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.NotFoundException;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.Provider;
+
+import org.eclipse.microprofile.config.ConfigProvider;
+import org.eclipse.microprofile.metrics.Timer;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.parser.Parser;
+import org.jsoup.select.Elements;
+
+/**
+ * Parse the search result and convert it into an object. 
+ * Note that the result is not a full HTML page, but an HTML table embedded in XML which is normally rendered by a browser.
+ * 
+ * @author Bart Hanssens
+ * @see <a href="https://economie.fgov.be/nl/themas/ondernemingen/specifieke-sectoren/kwaliteit-de-bouw/erkenning-van-aannemers">erkenning van aannemers website</a>
+ */
+@Provider
+@Consumes(MediaType.TEXT_XML)
+public class SearchResultReader implements MessageBodyReader<ContractorDAO> {
+	private static final String HEADERS = "KBO nummer,BTW nummer,aannemer,Erkenningsnummer,straat,Postcode,Gemeente,Beslissingsdatum,vervaldatum,categorie klassen";
+
+	private final boolean streaming;
+
+	/**
+	 * Constructor, using the streaming parser unless the Jsoup parser is configured
+	 */
+	public SearchResultReader() {
+		this(ConfigProvider.getConfig().getOptionalValue("contractorapi.parser.streaming", Boolean.class).orElse(true));
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param streaming use streaming parser instead of Jsoup
+	 */
+	SearchResultReader(boolean streaming) {
+		this.streaming = streaming;
+	}
+
+	@Override
+	public boolean isReadable(Class<?> type, Type genericType, Annotation[] antns, MediaType mt) {
+		return genericType.equals(ContractorDAO.class);
+	}
+
+	@Override
+	public ContractorDAO readFrom(Class<ContractorDAO> type, Type genericType, Annotation[] antns, MediaType mt, 
+									MultivaluedMap<String, String> headers, InputStream in) throws IOException, WebApplicationException {
+		Timer.Context ctx = StageMetrics.timer(StageMetrics.PARSE_RESULT).time();
+		try {
+			return parseOrganization(in);
+		} finally {
+			ctx.stop();
+		}
+	}
+	
+	/**
+	 * Parse the XML response with Jsoup, first as XML and then the embedded HTML table.
+	 * 
+	 * @param xml
+	 * @return table
+	 * @throws IOException 
+	 */
+	private TableDAO parseJsoup(InputStream xml) throws IOException, WebApplicationException {
+		TableDAO table = new TableDAO();
+
+		Document xmlDoc = Jsoup.parse(xml, StandardCharsets.UTF_8.toString(), "", Parser.xmlParser());
+		if (xmlDoc == null) {
+			throw new WebApplicationException("Could not process XML update response");
+		}
+
+		Elements updates = xmlDoc.select("update");
+		if (updates == null || updates.isEmpty()){
+			table.setExpired(!xmlDoc.select("redirect").isEmpty() || 
+								xmlDoc.select("error-name").text().contains("ViewExpired"));
+			return table;
+		}
+		table.setUpdate(true);
+
+		String cdata = updates.first().text();
+		// pagination only returns the rows, without the surrounding table
+		if (!cdata.contains("<table")) {
+			cdata = "<table><tbody id='mainForm:dataTab_data'>" + cdata + "</tbody></table>";
+		}
+		Document doc = Jsoup.parse(cdata);
+		if (doc == null) {
+			throw new WebApplicationException("Could not process partial HTML");
+		}
+
+		Elements headrow = doc.select("thead[id='mainForm:dataTab_head'] tr");
+		table.setHeaderRows(headrow.size());
+		headrow.select("th span[class='ui-column-title']").forEach(h -> table.getTitles().add(h.text()));
+
+		for (Element row: doc.select("tbody[id='mainForm:dataTab_data'] tr")) {
+			table.getRows().add(row.getElementsByTag("td").stream().map(Element::text).collect(Collectors.toList()));
+		}
+		return table;
+	}
+
+	/**
+	 * Parse the XML response into a table, using either the streaming or the Jsoup parser
+	 * 
+	 * @param xml
+	 * @return table
+	 * @throws IOException 
+	 */
+	TableDAO parseTable(InputStream xml) throws IOException, WebApplicationException {
+		return streaming ? new StreamingTableParser(xml).parse() : parseJsoup(xml);
+	}
+
+	/**
+	 * Parse the XML response, passing the rows to a handler instead of keeping them in the table.
+	 * The streaming parser does this while parsing, so large pages of results are not kept in memory as cells.
+	 * 
+	 * @param xml
+	 * @param rows row handler
+	 * @return table without rows
+	 * @throws IOException 
+	 */
+	TableDAO parseRows(InputStream xml, Consumer<List<String>> rows) throws IOException, WebApplicationException {
+		if (streaming) {
+			return new StreamingTableParser(xml, rows).parse();
+		}
+		TableDAO table = parseJsoup(xml);
+		table.getRows().forEach(rows);
+		table.getRows().clear();
+		return table;
+	}
+
+	/**
+	 * Check if the response contains the expected table
+	 * 
+	 * @param table table
+	 * @param headerRequired true if the table must have a header
+	 * @throws WebApplicationException 
+	 */
+	static void checkTable(TableDAO table, boolean headerRequired) throws WebApplicationException {
+		if (!table.hasUpdate()){
+			// JSF returns a redirect or a ViewExpiredException when the session is no longer valid
+			if (table.isExpired()) {
+				throw new SessionExpiredException("Session expired");
+			}
+			throw new WebApplicationException("No update element found");
+		}
+
+		if (!headerRequired && table.getHeaderRows() == 0) {
+			return;
+		}
+
+		if (table.getHeaderRows() != 1) {
+			throw new WebApplicationException("No header row");
+		}
+
+		if (table.getTitles().isEmpty()) {
+			throw new WebApplicationException("No headers in table");
+		}
+
+		// check if returned table headers match expected headers 
+		String collected = String.join(",", table.getTitles());
+		if (HEADERS.compareToIgnoreCase(collected) != 0) {
+			throw new WebApplicationException("Unknown headers");			
+		}
+	}
+
+	/**
+	 * Check if a row is the "not found" row, which has one cell with colspan 10
+	 * 
+	 * @param columns cells of the row
+	 * @return true if not found
+	 */
+	static boolean isNotFound(List<String> columns) {
+		return columns.size() == 1;
+	}
+
+	/**
+	 * Convert the cells of one row into a contractor
+	 * 
+	 * @param columns cells of the row
+	 * @return contractor
+	 * @throws WebApplicationException 
+	 */
+	static ContractorDAO toContractor(List<String> columns) throws WebApplicationException {
+		if (columns.size() != 10) {
+			throw new WebApplicationException("Expected 10 columns in result");			
+		}
+
+		ContractorDAO contractor = new ContractorDAO();
+		contractor.setCbeId(columns.get(0).replace("ui-button", ""));
+		contractor.setVatId(columns.get(1));
+		contractor.setName(columns.get(2));
+		contractor.setLicenseNo(columns.get(3));
+		contractor.setStreet(columns.get(4));
+		contractor.setPostalCode(columns.get(5));
+		contractor.setMunicipality(columns.get(6));
+		try {
+			contractor.setFromDate(ContractorDAO.parseDate(columns.get(7)));
+			contractor.setTillDate(ContractorDAO.parseDate(columns.get(8)));
+		} catch (DateTimeException dte) {
+			throw new WebApplicationException("Error parsing date");
+		}
+		contractor.setCatClassCodes(CatClasses.parse(columns.get(9)));
+
+		return contractor;
+	}
+
+	/**
+	 * Parse the XML response which contains an HTML table with exactly 1 row if a result was found, or an empty table.
+	 * 
+	 * @param xml
+	 * @return
+	 * @throws IOException 
+	 */
+	private ContractorDAO parseOrganization(InputStream xml) throws IOException, WebApplicationException {
+		TableDAO table = parseTable(xml);
+		checkTable(table, true);
+
+		if (table.getRows().size() != 1) {
+			throw new WebApplicationException("Expected exactly 1 result");
+		}
+
+		List<String> columns = table.getRows().get(0);
+		// a "not found" with colspan 10 will be returned when there is no search result
+		if (isNotFound(columns)) {
+			throw new NotFoundException("Not found");
+		}
+		return toContractor(columns);
+	}
+}
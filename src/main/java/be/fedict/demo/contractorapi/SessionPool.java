@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi;
+
+import be.fedict.demo.contractorapi.helper.FormDAO;
+import be.fedict.demo.contractorapi.helper.StageMetrics;
+
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.scheduler.Scheduled;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.rest.client.inject.RestClient;
+import org.jboss.logging.Logger;
+
+/**
+ * Pool of pre-fetched webform sessions (view state and cookies), so the search form does not have to be
+ * requested for every lookup.
+ * The pool is topped up in the background, sessions older than the maximum age are dropped.
+ * 
+ * @author Bart Hanssens
+ */
+@ApplicationScoped
+public class SessionPool {
+	private static final Logger LOG = Logger.getLogger(SessionPool.class);
+
+	private final BlockingDeque<FormDAO> idle = new LinkedBlockingDeque<>();
+
+	@Inject
+	@RestClient
+	Search search;
+
+	@Inject
+	UpstreamLimiter limiter;
+
+	@ConfigProperty(name = "contractorapi.session.pool-size", defaultValue = "4")
+	int poolSize;
+
+	@ConfigProperty(name = "contractorapi.session.max-age", defaultValue = "PT10M")
+	Duration maxAge;
+
+	void onStart(@Observes StartupEvent ev) {
+		refresh();
+	}
+
+	/**
+	 * Remove expired sessions and fill the pool up to its configured size.
+	 */
+	@Scheduled(every = "{contractorapi.session.refresh}")
+	void refresh() {
+		idle.removeIf(this::isExpired);
+		for (int i = idle.size(); i < poolSize; i++) {
+			try {
+				idle.offerLast(newSession());
+			} catch (RuntimeException e) {
+				LOG.warnf("Could not prefetch session: %s", e.getMessage());
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Check if a session is too old to be reused
+	 * 
+	 * @param form session
+	 * @return true if expired
+	 */
+	private boolean isExpired(FormDAO form) {
+		return form.getCreated().plus(maxAge).isBefore(Instant.now());
+	}
+
+	/**
+	 * Get a session from the webform, bypassing the pool
+	 * 
+	 * @return new session
+	 */
+	public FormDAO newSession() {
+		// mimic manual form entry
+		return limiter.call(() -> StageMetrics.time(StageMetrics.FORM, () -> search.getSearchForm(5, 8, "NL")));
+	}
+
+	/**
+	 * Get a session from the webform without blocking, bypassing the pool
+	 * 
+	 * @return new session
+	 */
+	public CompletionStage<FormDAO> newSessionAsync() {
+		return limiter.callAsync(() -> 
+			StageMetrics.timeAsync(StageMetrics.FORM, () -> search.getSearchFormAsync(5, 8, "NL")));
+	}
+
+	/**
+	 * Take a session out of the pool for exclusive use, or get a new one when the pool is empty.
+	 * 
+	 * @return session
+	 */
+	public CompletionStage<FormDAO> borrow() {
+		FormDAO form = pooled();
+		return (form != null) ? CompletableFuture.completedFuture(form) : newSessionAsync();
+	}
+
+	/**
+	 * Take a session out of the pool for exclusive use, or wait for a new one when the pool is empty.
+	 * 
+	 * @return session
+	 */
+	public FormDAO borrowWaiting() {
+		FormDAO form = pooled();
+		return (form != null) ? form : newSession();
+	}
+
+	/**
+	 * Take a valid session out of the pool, dropping expired sessions
+	 * 
+	 * @return session or null when the pool is empty
+	 */
+	private FormDAO pooled() {
+		FormDAO form;
+		while ((form = idle.pollFirst()) != null) {
+			if (!isExpired(form)) {
+				return form;
+			}
+		}
+		LOG.debug("Session pool empty");
+		return null;
+	}
+
+	/**
+	 * Put a session that is still valid back into the pool.
+	 * Sessions that are expired or exceed the size of the pool are dropped.
+	 * 
+	 * @param form session
+	 */
+	public void release(FormDAO form) {
+		if (!isExpired(form) && idle.size() < poolSize) {
+			idle.offerFirst(form);
+		}
+	}
+
+	/**
+	 * Number of idle sessions in the pool
+	 * 
+	 * @return number of sessions
+	 */
+	public int size() {
+		return idle.size();
+	}
+}
@@ -0,0 +1,423 @@
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi;
+
+import be.fedict.demo.contractorapi.helper.TableDAO;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.jsoup.parser.Parser;
+
+/**
+ * Single pass tokenizer for the XML partial response and the HTML table embedded in its CDATA section.
+ * Only the column titles and cells of the result table are kept, no DOM is built.
+ * 
+ * The embedded HTML is not necessarily well-formed, so unclosed cells and rows are closed implicitly
+ * and unknown tags are ignored.
+ * 
+ * @author Bart Hanssens
+ */
+class StreamingTableParser {
+	private static final String HEAD_ID = "mainForm:dataTab_head";
+	private static final String BODY_ID = "mainForm:dataTab_data";
+	private static final String TITLE_CLASS = "ui-column-title";
+
+	private final Reader reader;
+	private final char[] buf = new char[8192];
+	private int pos = 0;
+	private int lim = 0;
+
+	// reused for every tag, to avoid allocating strings
+	private final StringBuilder name = new StringBuilder(16);
+	private final StringBuilder attr = new StringBuilder(16);
+	private final StringBuilder val = new StringBuilder(32);
+	private final StringBuilder id = new StringBuilder(32);
+	private final StringBuilder cls = new StringBuilder(32);
+	private final StringBuilder text = new StringBuilder(64);
+	private final StringBuilder norm = new StringBuilder(64);
+
+	private final TableDAO table = new TableDAO();
+	private boolean redirect;
+	private String errorName = "";
+	private boolean inUpdate;
+	private int tableDepth;
+	private boolean inHead;
+	private boolean inBody;
+	private boolean inTitle;
+	private boolean inCell;
+	private boolean inErrorName;
+	private List<String> row;
+	private final Consumer<List<String>> rows;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param in UTF-8 encoded partial response
+	 */
+	StreamingTableParser(InputStream in) {
+		this(in, null);
+	}
+
+	/**
+	 * Constructor, passing each row to a handler as soon as it is parsed instead of keeping it in the table
+	 * 
+	 * @param in UTF-8 encoded partial response
+	 * @param rows row handler, or null to keep the rows in the table
+	 */
+	StreamingTableParser(InputStream in, Consumer<List<String>> rows) {
+		this.reader = new InputStreamReader(in, StandardCharsets.UTF_8);
+		this.rows = rows;
+	}
+
+	/**
+	 * Make sure at least n characters are available in the buffer
+	 * 
+	 * @param n number of characters
+	 * @return false if end of stream was reached before
+	 * @throws IOException 
+	 */
+	private boolean fill(int n) throws IOException {
+		if (lim - pos >= n) {
+			return true;
+		}
+		if (pos > 0) {
+			System.arraycopy(buf, pos, buf, 0, lim - pos);
+			lim -= pos;
+			pos = 0;
+		}
+		while (lim < n) {
+			int read = reader.read(buf, lim, buf.length - lim);
+			if (read < 0) {
+				return false;
+			}
+			lim += read;
+		}
+		return true;
+	}
+
+	private int read() throws IOException {
+		return fill(1) ? buf[pos++] : -1;
+	}
+
+	private int peek() throws IOException {
+		return fill(1) ? buf[pos] : -1;
+	}
+
+	/**
+	 * Check if the next characters match a string, without consuming them
+	 * 
+	 * @param s string
+	 * @return true if matching
+	 * @throws IOException 
+	 */
+	private boolean lookingAt(String s) throws IOException {
+		if (!fill(s.length())) {
+			return false;
+		}
+		for (int i = 0; i < s.length(); i++) {
+			if (buf[pos + i] != s.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void skipPast(String end) throws IOException {
+		while (!lookingAt(end)) {
+			if (read() < 0) {
+				return;
+			}
+		}
+		pos += end.length();
+	}
+
+	private void skipWhitespace() throws IOException {
+		int c;
+		while ((c = peek()) >= 0 && Character.isWhitespace(c)) {
+			pos++;
+		}
+	}
+
+	private static boolean isNameChar(int c) {
+		return Character.isLetterOrDigit(c) || c == '-' || c == ':' || c == '_' || c == '.';
+	}
+
+	private void readName(StringBuilder sb) throws IOException {
+		sb.setLength(0);
+		int c;
+		while ((c = peek()) >= 0 && isNameChar(c)) {
+			sb.append(Character.toLowerCase((char) c));
+			pos++;
+		}
+	}
+
+	private static boolean is(StringBuilder sb, String s) {
+		return sb.length() == s.length() && s.contentEquals(sb);
+	}
+
+	private boolean collecting() {
+		return inTitle || inCell || inErrorName;
+	}
+
+	/**
+	 * Parse the partial response
+	 * 
+	 * @return table with titles and cells
+	 * @throws IOException 
+	 */
+	TableDAO parse() throws IOException {
+		int c;
+		while ((c = read()) >= 0) {
+			if (c == '<') {
+				markup();
+			} else if (c == ']' && lookingAt("]>")) {
+				// end of CDATA section
+				pos += 2;
+			} else if (collecting()) {
+				text.append((char) c);
+			}
+		}
+		finishRow();
+		table.setExpired(redirect || errorName.contains("ViewExpired"));
+		return table;
+	}
+
+	/**
+	 * Process markup, the opening bracket has already been consumed
+	 * 
+	 * @throws IOException 
+	 */
+	private void markup() throws IOException {
+		if (lookingAt("![CDATA[")) {
+			// content is scanned like any other markup
+			pos += 8;
+			return;
+		}
+		if (lookingAt("!--")) {
+			skipPast("-->");
+			return;
+		}
+		int c = peek();
+		if (c == '!' || c == '?') {
+			skipPast(">");
+			return;
+		}
+		boolean end = (c == '/');
+		if (end) {
+			pos++;
+		}
+		readName(name);
+		if (name.length() == 0) {
+			// not a tag after all
+			if (collecting()) {
+				text.append('<');
+			}
+			return;
+		}
+		boolean selfClosing = attributes();
+		if (end) {
+			endTag();
+		} else {
+			startTag();
+			if (selfClosing) {
+				endTag();
+			}
+		}
+	}
+
+	/**
+	 * Read the attributes of a tag, only keeping "id" and "class"
+	 * 
+	 * @return true if the tag is self-closing
+	 * @throws IOException 
+	 */
+	private boolean attributes() throws IOException {
+		id.setLength(0);
+		cls.setLength(0);
+		while (true) {
+			skipWhitespace();
+			int c = read();
+			if (c < 0 || c == '>') {
+				return false;
+			}
+			if (c == '/' && peek() == '>') {
+				pos++;
+				return true;
+			}
+			if (!isNameChar(c)) {
+				continue;
+			}
+			pos--;
+			readName(attr);
+			skipWhitespace();
+			val.setLength(0);
+			if (peek() == '=') {
+				pos++;
+				skipWhitespace();
+				int quote = peek();
+				if (quote == '"' || quote == '\'') {
+					pos++;
+					while ((c = read()) >= 0 && c != quote) {
+						val.append((char) c);
+					}
+				} else {
+					while ((c = peek()) >= 0 && c != '>' && !Character.isWhitespace(c)) {
+						val.append((char) c);
+						pos++;
+					}
+				}
+			}
+			if (is(attr, "id")) {
+				id.append(val);
+			} else if (is(attr, "class")) {
+				cls.append(val);
+			}
+		}
+	}
+
+	private void startTag() {
+		if (is(name, "update")) {
+			table.setUpdate(true);
+			inUpdate = true;
+		} else if (is(name, "table")) {
+			tableDepth++;
+		} else if (is(name, "redirect")) {
+			redirect = true;
+		} else if (is(name, "error-name")) {
+			inErrorName = true;
+			text.setLength(0);
+		} else if (is(name, "thead")) {
+			inHead = is(id, HEAD_ID);
+		} else if (is(name, "tbody")) {
+			inBody = is(id, BODY_ID);
+		} else if (is(name, "tr")) {
+			if (inHead) {
+				table.setHeaderRows(table.getHeaderRows() + 1);
+			} else if (inBody || (inUpdate && tableDepth == 0)) {
+				// pagination only returns the rows, without the surrounding table
+				finishRow();
+				row = new ArrayList<>(10);
+			}
+		} else if (is(name, "span")) {
+			if (inHead && is(cls, TITLE_CLASS)) {
+				inTitle = true;
+				text.setLength(0);
+			}
+		} else if (is(name, "td")) {
+			if (row != null) {
+				finishCell();
+				inCell = true;
+				text.setLength(0);
+			}
+		} else if (collecting() && (is(name, "br") || is(name, "div") || is(name, "p"))) {
+			text.append(' ');
+		}
+	}
+
+	private void endTag() {
+		if (is(name, "update")) {
+			finishRow();
+			inUpdate = false;
+		} else if (is(name, "error-name")) {
+			if (inErrorName) {
+				errorName = text.toString();
+				inErrorName = false;
+			}
+		} else if (is(name, "thead")) {
+			inHead = false;
+		} else if (is(name, "tbody")) {
+			finishRow();
+			inBody = false;
+		} else if (is(name, "table")) {
+			finishRow();
+			inBody = false;
+			tableDepth--;
+		} else if (is(name, "tr")) {
+			finishRow();
+		} else if (is(name, "td")) {
+			finishCell();
+		} else if (is(name, "span")) {
+			if (inTitle) {
+				table.getTitles().add(normalized());
+				inTitle = false;
+			}
+		}
+	}
+
+	private void finishCell() {
+		if (inCell) {
+			row.add(normalized());
+			inCell = false;
+		}
+	}
+
+	private void finishRow() {
+		finishCell();
+		if (row != null) {
+			if (rows != null) {
+				rows.accept(row);
+			} else {
+				table.getRows().add(row);
+			}
+			row = null;
+		}
+	}
+
+	/**
+	 * Decode entities in the collected text, collapse whitespace and trim, like Jsoup's text() does
+	 * 
+	 * @return text
+	 */
+	private String normalized() {
+		CharSequence raw = text;
+		if (text.indexOf("&") >= 0) {
+			raw = Parser.unescapeEntities(text.toString(), false);
+		}
+		norm.setLength(0);
+		boolean space = false;
+		for (int i = 0; i < raw.length(); i++) {
+			char c = raw.charAt(i);
+			if (Character.isWhitespace(c) || c == '\u00a0') {
+				space = norm.length() > 0;
+			} else {
+				if (space) {
+					norm.append(' ');
+					space = false;
+				}
+				norm.append(c);
+			}
+		}
+		text.setLength(0);
+		return norm.toString();
+	}
+}
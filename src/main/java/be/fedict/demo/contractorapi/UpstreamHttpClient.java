@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi;
+
+import be.fedict.demo.contractorapi.helper.StageMetrics;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLContext;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.ssl.SSLContexts;
+
+import org.eclipse.microprofile.config.Config;
+import org.eclipse.microprofile.config.ConfigProvider;
+import org.eclipse.microprofile.rest.client.RestClientBuilder;
+import org.eclipse.microprofile.rest.client.spi.RestClientListener;
+import org.jboss.resteasy.client.jaxrs.engines.ApacheHttpClient43Engine;
+
+/**
+ * Configure the HTTP client used for the webform, with a connection pool, keep-alive, timeouts and 
+ * a shared TLS context so TLS sessions can be resumed.
+ * 
+ * Registered as MicroProfile REST client listener (service loader), so the timeouts of the REST client 
+ * configuration are replaced by the contractorapi.http settings.
+ * 
+ * @author Bart Hanssens
+ */
+public class UpstreamHttpClient implements RestClientListener {
+	private static volatile InstrumentedConnectionManager pool;
+
+	private static Duration duration(Config config, String name, String defaultValue) {
+		return config.getOptionalValue(name, Duration.class).orElse(Duration.parse(defaultValue));
+	}
+
+	private static int number(Config config, String name, int defaultValue) {
+		return config.getOptionalValue(name, Integer.class).orElse(defaultValue);
+	}
+
+	@Override
+	public void onNewClient(Class<?> serviceInterface, RestClientBuilder builder) {
+		if (serviceInterface != Search.class) {
+			return;
+		}
+		Config config = ConfigProvider.getConfig();
+
+		SSLContext ssl = SSLContexts.createSystemDefault();
+		ssl.getClientSessionContext().setSessionCacheSize(
+							number(config, "contractorapi.http.tls-session-cache", 100));
+		ssl.getClientSessionContext().setSessionTimeout(
+			(int) duration(config, "contractorapi.http.tls-session-timeout", "PT1H").toSeconds());
+
+		InstrumentedConnectionManager manager = new InstrumentedConnectionManager(
+			RegistryBuilder.<ConnectionSocketFactory>create()
+				.register("http", PlainConnectionSocketFactory.getSocketFactory())
+				.register("https", new SSLConnectionSocketFactory(ssl))
+				.build(),
+			duration(config, "contractorapi.http.ttl", "PT5M").toMillis());
+		manager.setMaxTotal(number(config, "contractorapi.http.max-total", 64));
+		manager.setDefaultMaxPerRoute(number(config, "contractorapi.http.max-per-route", 64));
+		manager.setValidateAfterInactivity(
+			(int) duration(config, "contractorapi.http.validate-after", "PT2S").toMillis());
+
+		RequestConfig requestConfig = RequestConfig.custom()
+			.setConnectTimeout((int) duration(config, "contractorapi.http.connect-timeout", "PT5S").toMillis())
+			.setSocketTimeout((int) duration(config, "contractorapi.http.read-timeout", "PT30S").toMillis())
+			.setConnectionRequestTimeout((int) duration(config, "contractorapi.http.pool-timeout", "PT5S").toMillis())
+			.build();
+
+		// use the keep-alive time sent by the server, if any
+		long keepAlive = duration(config, "contractorapi.http.keep-alive", "PT60S").toMillis();
+		CloseableHttpClient client = HttpClients.custom()
+			.setConnectionManager(manager)
+			.setDefaultRequestConfig(requestConfig)
+			.setKeepAliveStrategy((response, context) -> {
+				long ms = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+				return (ms > 0) ? Math.min(ms, keepAlive) : keepAlive;
+			})
+			.evictExpiredConnections()
+			.evictIdleConnections(keepAlive, TimeUnit.MILLISECONDS)
+			// session cookies are passed explicitly, and connections are not tied to a user
+			.disableCookieManagement()
+			.disableConnectionState()
+			.build();
+
+		builder.property("resteasy.httpEngine", new ApacheHttpClient43Engine(client, true));
+
+		StageMetrics.gauge("http.pool.leased", "Connections to upstream in use", 
+							() -> manager.getTotalStats().getLeased());
+		StageMetrics.gauge("http.pool.idle", "Idle connections to upstream", 
+							() -> manager.getTotalStats().getAvailable());
+		StageMetrics.gauge("http.pool.pending", "Requests waiting for a connection to upstream", 
+							() -> manager.getTotalStats().getPending());
+		pool = manager;
+	}
+
+	/**
+	 * Get statistics of the connection pool
+	 * 
+	 * @return map with number of leased, idle and pending connections, maximum pool size, 
+	 * total number of leases and of new connections
+	 */
+	public static Map<String, Long> stats() {
+		InstrumentedConnectionManager manager = pool;
+		if (manager == null) {
+			return Collections.emptyMap();
+		}
+		PoolStats stats = manager.getTotalStats();
+		Map<String, Long> map = new LinkedHashMap<>();
+		map.put("leased", (long) stats.getLeased());
+		map.put("idle", (long) stats.getAvailable());
+		map.put("pending", (long) stats.getPending());
+		map.put("max", (long) stats.getMax());
+		map.put("leases", manager.getLeases());
+		map.put("connects", manager.getConnects());
+		return map;
+	}
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi;
+
+import be.fedict.demo.contractorapi.helper.CircuitOpenException;
+import be.fedict.demo.contractorapi.helper.Futures;
+import be.fedict.demo.contractorapi.helper.LimitExceededException;
+import be.fedict.demo.contractorapi.helper.StageMetrics;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Supplier;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.MetricUnits;
+import org.eclipse.microprofile.metrics.annotation.Gauge;
+
+/**
+ * Adaptive limit on the number of requests to the webform in progress (AIMD).
+ * 
+ * The limit increases by one when a full window of requests completed fast and without errors, 
+ * and is multiplied by a backoff factor when a request fails or takes too long.
+ * Asynchronous calls are rejected when the limit is reached, blocking calls (background tasks) wait.
+ * Calls are also rejected while the circuit breaker is open.
+ * 
+ * @author Bart Hanssens
+ */
+@ApplicationScoped
+public class UpstreamLimiter {
+	@Inject
+	CircuitBreaker breaker;
+
+	@ConfigProperty(name = "contractorapi.limiter.initial", defaultValue = "8")
+	int initial;
+
+	@ConfigProperty(name = "contractorapi.limiter.min", defaultValue = "1")
+	int min;
+
+	@ConfigProperty(name = "contractorapi.limiter.max", defaultValue = "64")
+	int max;
+
+	@ConfigProperty(name = "contractorapi.limiter.latency", defaultValue = "PT2S")
+	Duration latency;
+
+	@ConfigProperty(name = "contractorapi.limiter.backoff", defaultValue = "0.75")
+	double backoff;
+
+	@ConfigProperty(name = "contractorapi.limiter.max-wait", defaultValue = "PT5S")
+	Duration maxWait;
+
+	@ConfigProperty(name = "contractorapi.limiter.retry-after", defaultValue = "1")
+	long retryAfter;
+
+	private double limit;
+	private int inFlight;
+
+	@PostConstruct
+	void init() {
+		limit = initial;
+	}
+
+	/**
+	 * Get the current limit
+	 * 
+	 * @return maximum number of requests in progress
+	 */
+	@Gauge(name = "upstream.limit", unit = MetricUnits.NONE, absolute = true,
+			description = "Maximum number of requests to upstream in progress")
+	public synchronized int getLimit() {
+		return (int) limit;
+	}
+
+	public synchronized int getInFlight() {
+		return inFlight;
+	}
+
+	/**
+	 * Try to start a request
+	 * 
+	 * @return false if the limit has been reached
+	 */
+	synchronized boolean tryAcquire() {
+		if (inFlight >= (int) limit) {
+			return false;
+		}
+		inFlight++;
+		return true;
+	}
+
+	/**
+	 * Start a request, waiting until the limit allows it
+	 * 
+	 * @return false if the maximum waiting time was exceeded
+	 * @throws InterruptedException 
+	 */
+	synchronized boolean acquire() throws InterruptedException {
+		long deadline = System.nanoTime() + maxWait.toNanos();
+		while (inFlight >= (int) limit) {
+			long left = deadline - System.nanoTime();
+			if (left <= 0) {
+				return false;
+			}
+			wait(Math.max(1, left / 1_000_000));
+		}
+		inFlight++;
+		return true;
+	}
+
+	/**
+	 * Finish a request and adjust the limit
+	 * 
+	 * @param nanos duration
+	 * @param failed true if the request failed
+	 */
+	synchronized void release(long nanos, boolean failed) {
+		inFlight--;
+		if (failed || nanos > latency.toNanos()) {
+			limit = Math.max(min, limit * backoff);
+		} else if (inFlight + 1 >= (int) limit / 2) {
+			// only increase when the limit is actually being used
+			limit = Math.min(max, limit + 1.0 / limit);
+		}
+		notifyAll();
+	}
+
+	/**
+	 * Give back a permit without adjusting the limit, e.g. when the circuit breaker is open
+	 */
+	synchronized void cancel() {
+		inFlight--;
+		notifyAll();
+	}
+
+	/**
+	 * Check if the request is allowed by the circuit breaker, giving back the permit if not
+	 * 
+	 * @return exception to be thrown or null
+	 */
+	private CircuitOpenException checkBreaker() {
+		if (breaker.allow()) {
+			return null;
+		}
+		cancel();
+		StageMetrics.count(StageMetrics.BREAKER_REJECTED);
+		return new CircuitOpenException(breaker.getRetryAfter());
+	}
+
+	/**
+	 * Finish a request, adjusting the limit and the circuit breaker
+	 * 
+	 * @param start start time
+	 * @param t exception or null
+	 */
+	private void done(long start, Throwable t) {
+		boolean failed = isFailure(t);
+		release(System.nanoTime() - start, failed);
+		breaker.record(!failed);
+	}
+
+	/**
+	 * Check if the request failed, "not found" and expired sessions are valid answers
+	 * 
+	 * @param t exception or null
+	 * @return true if failed
+	 */
+	private static boolean isFailure(Throwable t) {
+		return t != null && !Futures.isNotFound(t) && !Futures.isExpired(t);
+	}
+
+	private LimitExceededException rejected() {
+		StageMetrics.count(StageMetrics.REJECTED);
+		return new LimitExceededException(retryAfter);
+	}
+
+	/**
+	 * Run a blocking call to upstream, waiting for the limit if needed
+	 * 
+	 * @param <T> result type
+	 * @param call call to upstream
+	 * @return result
+	 * @throws LimitExceededException when waiting took too long
+	 */
+	public <T> T call(Supplier<T> call) {
+		try {
+			if (!acquire()) {
+				throw rejected();
+			}
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw rejected();
+		}
+		CircuitOpenException open = checkBreaker();
+		if (open != null) {
+			throw open;
+		}
+		long start = System.nanoTime();
+		Throwable error = null;
+		try {
+			return call.get();
+		} catch (RuntimeException e) {
+			error = e;
+			throw e;
+		} finally {
+			done(start, error);
+		}
+	}
+
+	/**
+	 * Run an asynchronous call to upstream, or reject it immediately when the limit has been reached
+	 * 
+	 * @param <T> result type
+	 * @param call call to upstream
+	 * @return result, or failed with LimitExceededException
+	 */
+	public <T> CompletionStage<T> callAsync(Supplier<CompletionStage<T>> call) {
+		if (!tryAcquire()) {
+			return CompletableFuture.failedFuture(rejected());
+		}
+		CircuitOpenException open = checkBreaker();
+		if (open != null) {
+			return CompletableFuture.failedFuture(open);
+		}
+		long start = System.nanoTime();
+		CompletionStage<T> stage;
+		try {
+			stage = call.get();
+		} catch (RuntimeException e) {
+			done(start, e);
+			throw e;
+		}
+		return stage.whenComplete((val, t) -> done(start, t));
+	}
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi;
+
+import be.fedict.demo.contractorapi.helper.ContractorDAO;
+import be.fedict.demo.contractorapi.helper.FormDAO;
+import be.fedict.demo.contractorapi.helper.SessionExpiredException;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.core.Form;
+
+/**
+ * Search the webform and page through the results, like the JSF datatable does in a browser:
+ * one search request with the criteria, followed by pagination requests for the next rows.
+ * 
+ * The pagination requests only work within the session of the search, so when the session expires
+ * a new session is started and the search is repeated before continuing with the next page.
+ * 
+ * @author Bart Hanssens
+ */
+class UpstreamPager {
+	static final String ID_FIELD = "mainForm:crit1465:crit767";
+
+	private final Search search;
+	private final SessionPool sessions;
+	private final UpstreamLimiter limiter;
+	private final Map<String, String> criteria;
+	private final int pageSize;
+	private FormDAO form;
+	private boolean complete;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param search webform client
+	 * @param sessions sessions
+	 * @param limiter limiter for upstream requests
+	 * @param criteria form field names and values, empty for all contractors
+	 * @param pageSize number of rows per page
+	 */
+	UpstreamPager(Search search, SessionPool sessions, UpstreamLimiter limiter, Map<String, String> criteria, 
+					int pageSize) {
+		this.search = search;
+		this.sessions = sessions;
+		this.limiter = limiter;
+		this.criteria = criteria;
+		this.pageSize = pageSize;
+	}
+
+	/**
+	 * Send the search with the criteria, returning the first page
+	 * 
+	 * @return list of contractors
+	 */
+	private List<ContractorDAO> first() {
+		Form params = new Form()
+			.param(ID_FIELD, criteria.getOrDefault(ID_FIELD, ""))
+			.param("javax.faces.ViewState", form.getViewState())
+			.param("javax.faces.partial.ajax", "true")
+			.param("javax.faces.source", "mainForm:searchButton")
+			.param("javax.faces.partial.execute", "@all")
+			.param("javax.faces.partial.render", "mainForm:dataTab")
+			.param("mainForm:searchButton", "mainForm:searchButton")
+			.param("mainForm_SUBMIT", "1");
+		criteria.forEach((k, v) -> {
+			if (!k.equals(ID_FIELD)) {
+				params.param(k, v);
+			}
+		});
+		return limiter.call(() -> search.getContractors(params,
+				form.getCookies().get("JSESSIONID"), form.getCookies().get("MY_SESSION")));
+	}
+
+	/**
+	 * Get a page of search results
+	 * 
+	 * @param first index of the first row
+	 * @return list of contractors
+	 */
+	private List<ContractorDAO> page(int first) {
+		return limiter.call(() -> search.getContractorPage(form.getViewState(),
+				form.getCookies().get("JSESSIONID"), form.getCookies().get("MY_SESSION"),
+				true, "mainForm:dataTab", "mainForm:dataTab", "mainForm:dataTab", true, first, pageSize, true, 1));
+	}
+
+	/**
+	 * Get the next page of search results, starting a new search if the session expired.
+	 * 
+	 * @param first index of the first row
+	 * @return list of contractors
+	 */
+	private List<ContractorDAO> nextPage(int first) {
+		try {
+			return page(first);
+		} catch (ProcessingException pe) {
+			if (!(pe.getCause() instanceof SessionExpiredException)) {
+				throw pe;
+			}
+		}
+		form = sessions.newSession();
+		first();
+		return page(first);
+	}
+
+	/**
+	 * Check if the last call to forEach reached the last page, instead of the maximum number of pages
+	 * 
+	 * @return true if all results were retrieved
+	 */
+	boolean isComplete() {
+		return complete;
+	}
+
+	/**
+	 * Page through all search results
+	 * 
+	 * @param maxPages maximum number of pages
+	 * @param consumer called for each contractor
+	 * @return normalized enterprise IDs of all contractors
+	 */
+	Set<String> forEach(int maxPages, Consumer<ContractorDAO> consumer) {
+		Set<String> seen = new HashSet<>();
+
+		form = sessions.newSession();
+		List<ContractorDAO> page = first();
+		int first = 0;
+		boolean repeated = false;
+
+		for (int pages = 0; !page.isEmpty() && pages < maxPages; pages++) {
+			int known = seen.size();
+			for (ContractorDAO contractor: page) {
+				consumer.accept(contractor);
+				seen.add(ContractorResource.normalize(contractor.getCbeId()));
+			}
+			// stop if the webform keeps returning the same rows
+			if (seen.size() == known) {
+				repeated = true;
+				break;
+			}
+			first += page.size();
+			page = nextPage(first);
+		}
+		complete = page.isEmpty() || repeated;
+		return seen;
+	}
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi.helper;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Helper class for packing category / class pairs into a sorted array of shorts.
+ * 
+ * A category is an uppercase letter followed by up to two digits (e.g. "D", "D24"), 
+ * the class a single digit. The 12 upper bits hold the category, the lower 4 bits the class.
+ * 
+ * @author Bart Hanssens
+ */
+public class CatClasses {
+	public static final short[] EMPTY = new short[0];
+	
+	private CatClasses() {
+	}
+
+	/**
+	 * Get the numeric code of a category
+	 * 
+	 * @param cat category code, e.g. "D24"
+	 * @return code or -1 when not a valid category
+	 */
+	public static int encode(CharSequence cat) {
+		return encode(cat, 0, cat.length());
+	}
+
+	private static int encode(CharSequence str, int start, int end) {
+		int len = end - start;
+		if (len < 1 || len > 3) {
+			return -1;
+		}
+		char letter = str.charAt(start);
+		if (letter < 'A' || letter > 'Z') {
+			return -1;
+		}
+		int n = 0;
+		for (int i = start + 1; i < end; i++) {
+			char c = str.charAt(i);
+			if (c < '0' || c > '9') {
+				return -1;
+			}
+			n = n * 10 + (c - '0');
+		}
+		// keep "D", "D2" and "D02" apart
+		int suffix = (len == 1) ? 0 : (len == 2) ? 1 + n : 11 + n;
+		return (letter - 'A') * 111 + suffix;
+	}
+
+	/**
+	 * Get the category code of a packed value
+	 * 
+	 * @param packed packed category and class
+	 * @return category code, e.g. "D24"
+	 */
+	public static String category(short packed) {
+		int cat = (packed & 0xFFFF) >>> 4;
+		char letter = (char) ('A' + cat / 111);
+		int suffix = cat % 111;
+		if (suffix == 0) {
+			return String.valueOf(letter);
+		}
+		if (suffix <= 10) {
+			return new String(new char[] { letter, (char) ('0' + suffix - 1) });
+		}
+		int n = suffix - 11;
+		return new String(new char[] { letter, (char) ('0' + n / 10), (char) ('0' + n % 10) });
+	}
+
+	/**
+	 * Get the class of a packed value
+	 * 
+	 * @param packed packed category and class
+	 * @return class
+	 */
+	public static int classOf(short packed) {
+		return packed & 0x0F;
+	}
+
+	/**
+	 * Get the category part of a packed value
+	 * 
+	 * @param packed packed category and class
+	 * @return numeric category code
+	 */
+	public static int categoryOf(short packed) {
+		return (packed & 0xFFFF) >>> 4;
+	}
+
+	private static short pack(int cat, int cls) {
+		return (short) (cat << 4 | cls);
+	}
+
+	/**
+	 * Add or replace a category in a sorted array
+	 * 
+	 * @param arr sorted array
+	 * @param len number of values used in the array
+	 * @param value packed value
+	 * @return new number of values
+	 */
+	private static int put(short[] arr, int len, short value) {
+		int cat = categoryOf(value);
+		int i = 0;
+		while (i < len && categoryOf(arr[i]) < cat) {
+			i++;
+		}
+		if (i < len && categoryOf(arr[i]) == cat) {
+			arr[i] = value;
+			return len;
+		}
+		System.arraycopy(arr, i, arr, i + 1, len - i);
+		arr[i] = value;
+		return len + 1;
+	}
+
+	/**
+	 * Parse the categories column of the search result, e.g. "D (5) D24 (2) E (3)".
+	 * Pairs that cannot be parsed are skipped.
+	 * 
+	 * @param str string
+	 * @return sorted array of packed values
+	 */
+	public static short[] parse(CharSequence str) {
+		int end = str.length();
+		// at least 4 characters per pair
+		short[] arr = new short[end / 4 + 1];
+		int len = 0;
+
+		int i = 0;
+		while (i < end) {
+			while (i < end && str.charAt(i) == ' ') {
+				i++;
+			}
+			int start = i;
+			while (i < end && str.charAt(i) != ' ') {
+				i++;
+			}
+			int cat = encode(str, start, i);
+			// expect " (digit)"
+			if (cat >= 0 && i + 3 < end && str.charAt(i + 1) == '(' && str.charAt(i + 3) == ')') {
+				char c = str.charAt(i + 2);
+				if (c >= '0' && c <= '9') {
+					len = put(arr, len, pack(cat, c - '0'));
+					i += 4;
+				}
+			}
+		}
+		return (len == 0) ? EMPTY : Arrays.copyOf(arr, len);
+	}
+
+	/**
+	 * Pack a map of categories and classes
+	 * 
+	 * @param map category as key, class as value
+	 * @return sorted array of packed values
+	 * @throws IllegalArgumentException when category or class are not valid
+	 */
+	public static short[] pack(Map<String, String> map) {
+		if (map == null || map.isEmpty()) {
+			return EMPTY;
+		}
+		short[] arr = new short[map.size()];
+		int len = 0;
+		for (Map.Entry<String, String> e: map.entrySet()) {
+			int cat = encode(e.getKey());
+			String cls = e.getValue();
+			if (cat < 0 || cls == null || cls.length() != 1 || !Character.isDigit(cls.charAt(0))) {
+				throw new IllegalArgumentException("Invalid category " + e.getKey() + " " + cls);
+			}
+			len = put(arr, len, pack(cat, cls.charAt(0) - '0'));
+		}
+		return arr;
+	}
+
+	/**
+	 * Convert packed values to a map, sorted by category
+	 * 
+	 * @param arr packed values
+	 * @return category as key, class as value
+	 */
+	public static Map<String, String> toMap(short[] arr) {
+		Map<String, String> map = new TreeMap<>();
+		for (short s: arr) {
+			map.put(category(s), String.valueOf(classOf(s)));
+		}
+		return map;
+	}
+
+	/**
+	 * Get the class for a category
+	 * 
+	 * @param arr packed values
+	 * @param cat numeric category code
+	 * @return class or -1 when category is not present
+	 */
+	public static int get(short[] arr, int cat) {
+		for (short s: arr) {
+			if (categoryOf(s) == cat) {
+				return classOf(s);
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi.helper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * Minimal buffered CBOR (RFC 8949) encoder, only supporting the types needed for contractor data
+ * 
+ * @author Bart Hanssens
+ */
+public class CborEncoder {
+	private static final int UNSIGNED = 0;
+	private static final int NEGATIVE = 1 << 5;
+	private static final int TEXT = 3 << 5;
+	private static final int ARRAY = 4 << 5;
+	private static final int MAP = 5 << 5;
+	private static final int TAG = 6 << 5;
+	private static final int FALSE = 0xF4;
+	private static final int TRUE = 0xF5;
+	private static final int NULL = 0xF6;
+
+	// RFC 8943: number of days since 1970-01-01
+	private static final int TAG_EPOCH_DAYS = 100;
+
+	private final OutputStream out;
+	private final byte[] buf = new byte[8192];
+	private int pos;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param out output stream
+	 */
+	public CborEncoder(OutputStream out) {
+		this.out = out;
+	}
+
+	private void ensure(int len) throws IOException {
+		if (pos + len > buf.length) {
+			flush();
+		}
+	}
+
+	/**
+	 * Write the initial byte and the argument, using the shortest possible encoding
+	 * 
+	 * @param major major type
+	 * @param val argument
+	 * @throws IOException 
+	 */
+	private void head(int major, long val) throws IOException {
+		ensure(9);
+		if (val < 24) {
+			buf[pos++] = (byte) (major | val);
+		} else if (val < 0x100) {
+			buf[pos++] = (byte) (major | 24);
+			buf[pos++] = (byte) val;
+		} else if (val < 0x10000) {
+			buf[pos++] = (byte) (major | 25);
+			buf[pos++] = (byte) (val >> 8);
+			buf[pos++] = (byte) val;
+		} else if (val < 0x100000000L) {
+			buf[pos++] = (byte) (major | 26);
+			for (int shift = 24; shift >= 0; shift -= 8) {
+				buf[pos++] = (byte) (val >> shift);
+			}
+		} else {
+			buf[pos++] = (byte) (major | 27);
+			for (int shift = 56; shift >= 0; shift -= 8) {
+				buf[pos++] = (byte) (val >> shift);
+			}
+		}
+	}
+
+	public CborEncoder writeMap(int size) throws IOException {
+		head(MAP, size);
+		return this;
+	}
+
+	public CborEncoder writeArray(int size) throws IOException {
+		head(ARRAY, size);
+		return this;
+	}
+
+	public CborEncoder writeInt(long val) throws IOException {
+		if (val >= 0) {
+			head(UNSIGNED, val);
+		} else {
+			head(NEGATIVE, -1 - val);
+		}
+		return this;
+	}
+
+	public CborEncoder writeBoolean(boolean val) throws IOException {
+		ensure(1);
+		buf[pos++] = (byte) (val ? TRUE : FALSE);
+		return this;
+	}
+
+	public CborEncoder writeNull() throws IOException {
+		ensure(1);
+		buf[pos++] = (byte) NULL;
+		return this;
+	}
+
+	/**
+	 * Write a text string, or null
+	 * 
+	 * @param str string or null
+	 * @return this encoder
+	 * @throws IOException 
+	 */
+	public CborEncoder writeString(String str) throws IOException {
+		if (str == null) {
+			return writeNull();
+		}
+		int len = str.length();
+		// fast path for ASCII, avoiding the intermediate byte array
+		if (len < buf.length / 2) {
+			int i = 0;
+			while (i < len && str.charAt(i) < 0x80) {
+				i++;
+			}
+			if (i == len) {
+				head(TEXT, len);
+				ensure(len);
+				for (i = 0; i < len; i++) {
+					buf[pos++] = (byte) str.charAt(i);
+				}
+				return this;
+			}
+		}
+		byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+		head(TEXT, bytes.length);
+		if (bytes.length > buf.length - pos) {
+			flush();
+			out.write(bytes);
+		} else {
+			System.arraycopy(bytes, 0, buf, pos, bytes.length);
+			pos += bytes.length;
+		}
+		return this;
+	}
+
+	/**
+	 * Write a date as a tagged number of days since the epoch, or null
+	 * 
+	 * @param date date or null
+	 * @return this encoder
+	 * @throws IOException 
+	 */
+	public CborEncoder writeDate(LocalDate date) throws IOException {
+		if (date == null) {
+			return writeNull();
+		}
+		head(TAG, TAG_EPOCH_DAYS);
+		return writeInt(date.toEpochDay());
+	}
+
+	/**
+	 * Write the buffered data to the output stream
+	 * 
+	 * @throws IOException 
+	 */
+	public void flush() throws IOException {
+		out.write(buf, 0, pos);
+		pos = 0;
+	}
+}
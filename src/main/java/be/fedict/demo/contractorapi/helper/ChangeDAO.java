@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi.helper;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Helper class for a change in the data of a contractor, with the old and new values of the changed fields
+ * 
+ * @author Bart Hanssens
+ */
+public class ChangeDAO {
+	private long id;
+	private String cbeId;
+	private Instant time;
+	private Map<String, String> before;
+	private Map<String, String> after;
+
+	/**
+	 * Get the sequence number of the change, to be used as cursor
+	 * 
+	 * @return sequence number
+	 */
+	public long getId() {
+		return id;
+	}
+
+	public void setId(long id) {
+		this.id = id;
+	}
+
+	public String getCbeId() {
+		return cbeId;
+	}
+
+	public void setCbeId(String cbeId) {
+		this.cbeId = cbeId;
+	}
+
+	public Instant getTime() {
+		return time;
+	}
+
+	public void setTime(Instant time) {
+		this.time = time;
+	}
+
+	/**
+	 * Get the old values of the changed fields
+	 * 
+	 * @return map of field name and value (null when not set)
+	 */
+	public Map<String, String> getBefore() {
+		return before;
+	}
+
+	public void setBefore(Map<String, String> before) {
+		this.before = before;
+	}
+
+	/**
+	 * Get the new values of the changed fields
+	 * 
+	 * @return map of field name and value (null when not set)
+	 */
+	public Map<String, String> getAfter() {
+		return after;
+	}
+
+	public void setAfter(Map<String, String> after) {
+		this.after = after;
+	}
+}
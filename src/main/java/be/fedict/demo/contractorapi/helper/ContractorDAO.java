@@ -1,136 +1,237 @@
-/*
- * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
- * All rights reserved.
- *
- * Redistribution and use in source and binary forms, with or without
- * modification, are permitted provided that the following conditions are met:
- *
- * * Redistributions of source code must retain the above copyright notice, this
- *   list of conditions and the following disclaimer.
- * * Redistributions in binary form must reproduce the above copyright notice,
- *   this list of conditions and the following disclaimer in the documentation
- *   and/or other materials provided with the distribution.
- *
- * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
- * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
- * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
- * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
- * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
- * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
- * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
- * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
- * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
- * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
- * POSSIBILITY OF SUCH DAMAGE.
- */
-package be.fedict.demo.contractorapi.helper;
-
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.HashMap;
-import java.util.Map;
-
-/**
- * Helper class for contractor data
- * 
- * @author Bart Hanssens
- */
-public class ContractorDAO {
-	private final static SimpleDateFormat FMT = new SimpleDateFormat("yyyy-MM-dd");
-	
-	private String cbeId;
-	private String vatId;
-	private String name;
-	private String licenseNo;
-	private String street;
-	private String postalCode;
-	private String municipality;
-	private Date fromDate;
-	private Date tillDate;
-	private Map<String,String> catClasses = new HashMap<>();
-	
-	public String getCbeId() {
-		return cbeId;
-	}
-
-	public void setCbeId(String cbeId) {
-		this.cbeId = cbeId;
-	}
-
-	public String getVatId() {
-		return vatId;
-	}
-
-	public void setVatId(String vatId) {
-		this.vatId = vatId;
-	}
-
-	public String getName() {
-		return name;
-	}
-
-	public void setName(String name) {
-		this.name = name;
-	}
-
-	public String getLicenseNo() {
-		return licenseNo;
-	}
-
-	public void setLicenseNo(String licenseNo) {
-		this.licenseNo = licenseNo;
-	}
-
-	public String getStreet() {
-		return street;
-	}
-
-	public void setStreet(String street) {
-		this.street = street;
-	}
-
-	public String getPostalCode() {
-		return postalCode;
-	}
-
-	public void setPostalCode(String postalCode) {
-		this.postalCode = postalCode;
-	}
-
-	public String getMunicipality() {
-		return municipality;
-	}
-
-	public void setMunicipality(String municipality) {
-		this.municipality = municipality;
-	}
-
-	public Date getFromDate() {
-		return fromDate;
-	}
-
-	public void setFromDate(String fromDate) throws ParseException {
-		if (fromDate != null && !fromDate.isEmpty()) {
-			this.fromDate = FMT.parse(fromDate);
-		}
-	}
-
-	public Date getTillDate() {
-		return tillDate;
-	}
-
-	public void setTillDate(String tillDate) throws ParseException {
-		if (tillDate != null && !tillDate.isEmpty()) {
-			this.tillDate = FMT.parse(tillDate);
-		}
-	}
-
-	public Map<String, String> getCatClasses() {
-		return catClasses;
-	}
-
-	public void setCatClasses(Map<String, String> catClasses) {
-		this.catClasses = catClasses;
-	}	
-}
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi.helper;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+
+import javax.json.bind.annotation.JsonbDateFormat;
+import javax.json.bind.annotation.JsonbTransient;
+
+/**
+ * Helper class for contractor data.
+ * 
+ * Dates are stored as days since epoch, categories and classes as a packed array.
+ * 
+ * @author Bart Hanssens
+ */
+public class ContractorDAO {
+	// same JSON output as java.util.Date in previous versions
+	public final static String DATE_FORMAT = "yyyy-MM-dd'T00:00:00Z[UTC]'";
+	private final static int NO_DATE = Integer.MIN_VALUE;
+
+	private String cbeId;
+	private String vatId;
+	private String name;
+	private String licenseNo;
+	private String street;
+	private String postalCode;
+	private String municipality;
+	private int fromDays = NO_DATE;
+	private int tillDays = NO_DATE;
+	private short[] catClassCodes = CatClasses.EMPTY;
+
+	public ContractorDAO() {
+	}
+
+	/**
+	 * Copy constructor
+	 * 
+	 * @param other contractor to copy
+	 */
+	public ContractorDAO(ContractorDAO other) {
+		this.cbeId = other.cbeId;
+		this.vatId = other.vatId;
+		this.name = other.name;
+		this.licenseNo = other.licenseNo;
+		this.street = other.street;
+		this.postalCode = other.postalCode;
+		this.municipality = other.municipality;
+		this.fromDays = other.fromDays;
+		this.tillDays = other.tillDays;
+		this.catClassCodes = other.catClassCodes;
+	}
+
+	/**
+	 * Parse a date in yyyy-MM-dd format, without intermediate objects
+	 * 
+	 * @param str string or null
+	 * @return date or null when string is null or empty
+	 * @throws DateTimeException when the date is not valid
+	 */
+	public static LocalDate parseDate(CharSequence str) throws DateTimeException {
+		if (str == null || str.length() == 0) {
+			return null;
+		}
+		if (str.length() != 10 || str.charAt(4) != '-' || str.charAt(7) != '-') {
+			throw new DateTimeException("Invalid date " + str);
+		}
+		return LocalDate.of(digits(str, 0, 4), digits(str, 5, 7), digits(str, 8, 10));
+	}
+
+	private static int digits(CharSequence str, int start, int end) {
+		int n = 0;
+		for (int i = start; i < end; i++) {
+			char c = str.charAt(i);
+			if (c < '0' || c > '9') {
+				throw new DateTimeException("Invalid date " + str);
+			}
+			n = n * 10 + (c - '0');
+		}
+		return n;
+	}
+
+	private static int toDays(LocalDate date) {
+		return (date != null) ? (int) date.toEpochDay() : NO_DATE;
+	}
+
+	private static LocalDate fromDays(int days) {
+		return (days != NO_DATE) ? LocalDate.ofEpochDay(days) : null;
+	}
+	
+	public String getCbeId() {
+		return cbeId;
+	}
+
+	public void setCbeId(String cbeId) {
+		this.cbeId = cbeId;
+	}
+
+	public String getVatId() {
+		return vatId;
+	}
+
+	public void setVatId(String vatId) {
+		this.vatId = vatId;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public String getLicenseNo() {
+		return licenseNo;
+	}
+
+	public void setLicenseNo(String licenseNo) {
+		this.licenseNo = licenseNo;
+	}
+
+	public String getStreet() {
+		return street;
+	}
+
+	public void setStreet(String street) {
+		this.street = street;
+	}
+
+	public String getPostalCode() {
+		return postalCode;
+	}
+
+	public void setPostalCode(String postalCode) {
+		this.postalCode = postalCode;
+	}
+
+	public String getMunicipality() {
+		return municipality;
+	}
+
+	public void setMunicipality(String municipality) {
+		this.municipality = municipality;
+	}
+
+	@JsonbDateFormat(DATE_FORMAT)
+	public LocalDate getFromDate() {
+		return fromDays(fromDays);
+	}
+
+	public void setFromDate(LocalDate fromDate) {
+		this.fromDays = toDays(fromDate);
+	}
+
+	@JsonbDateFormat(DATE_FORMAT)
+	public LocalDate getTillDate() {
+		return fromDays(tillDays);
+	}
+
+	public void setTillDate(LocalDate tillDate) {
+		this.tillDays = toDays(tillDate);
+	}
+
+	public Map<String, String> getCatClasses() {
+		return CatClasses.toMap(catClassCodes);
+	}
+
+	public void setCatClasses(Map<String, String> catClasses) {
+		this.catClassCodes = CatClasses.pack(catClasses);
+	}
+
+	@JsonbTransient
+	public short[] getCatClassCodes() {
+		return catClassCodes;
+	}
+
+	@JsonbTransient
+	public void setCatClassCodes(short[] catClassCodes) {
+		this.catClassCodes = (catClassCodes != null) ? catClassCodes : CatClasses.EMPTY;
+	}
+
+	/**
+	 * Compare contractor data, e.g. to detect changes in the webform
+	 * 
+	 * @param obj other object
+	 * @return true if all fields are the same
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof ContractorDAO)) {
+			return false;
+		}
+		ContractorDAO other = (ContractorDAO) obj;
+		return fromDays == other.fromDays && tillDays == other.tillDays
+			&& Objects.equals(cbeId, other.cbeId) && Objects.equals(vatId, other.vatId)
+			&& Objects.equals(name, other.name) && Objects.equals(licenseNo, other.licenseNo)
+			&& Objects.equals(street, other.street) && Objects.equals(postalCode, other.postalCode)
+			&& Objects.equals(municipality, other.municipality) 
+			&& Arrays.equals(catClassCodes, other.catClassCodes);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(cbeId, name, licenseNo, fromDays, tillDays) * 31 + Arrays.hashCode(catClassCodes);
+	}
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi.helper;
+
+/**
+ * Helper class for Belgian enterprise numbers (CBE / KBO), also accepting VAT numbers (BE prefix).
+ * 
+ * An enterprise number has 10 digits (older numbers 9 digits, without leading 0), the last 2 digits are 
+ * 97 minus the first 8 digits modulo 97.
+ * Only loops over the characters, no regular expressions or intermediate strings.
+ * 
+ * @author Bart Hanssens
+ */
+public class EnterpriseNumber {
+	/**
+	 * Reason why an enterprise number is rejected
+	 */
+	public enum Invalid {
+		EMPTY("No ID"),
+		CHARACTER("Invalid character in ID"),
+		LENGTH("ID must have 9 or 10 digits"),
+		CHECKSUM("Invalid check digits");
+
+		private final String reason;
+
+		Invalid(String reason) {
+			this.reason = reason;
+		}
+
+		public String getReason() {
+			return reason;
+		}
+	}
+
+	private EnterpriseNumber() {
+	}
+
+	/**
+	 * Check if a character can be used to separate groups of digits
+	 * 
+	 * @param c character
+	 * @return true if separator
+	 */
+	private static boolean isSeparator(char c) {
+		return c == '.' || c == '-' || c == '/' || Character.isWhitespace(c) || Character.isSpaceChar(c);
+	}
+
+	/**
+	 * Remove "BE", spaces, dots ... from an enterprise ID and add the leading 0 of 9 digit numbers
+	 * 
+	 * @param str enterprise ID as entered
+	 * @return digits only
+	 */
+	public static String normalize(CharSequence str) {
+		int len = str.length();
+		char[] digits = new char[len + 1];
+		int n = 1;
+		for (int i = 0; i < len; i++) {
+			char c = str.charAt(i);
+			if (c >= '0' && c <= '9') {
+				digits[n++] = c;
+			}
+		}
+		if (n == 10) {
+			digits[0] = '0';
+			return new String(digits, 0, n);
+		}
+		return new String(digits, 1, n - 1);
+	}
+
+	/**
+	 * Validate an enterprise or VAT number
+	 * 
+	 * @param str enterprise ID as entered
+	 * @return null if valid, otherwise the reason
+	 */
+	public static Invalid validate(CharSequence str) {
+		if (str == null) {
+			return Invalid.EMPTY;
+		}
+		int len = str.length();
+		int i = 0;
+		while (i < len && isSeparator(str.charAt(i))) {
+			i++;
+		}
+		if (i + 1 < len && (str.charAt(i) == 'B' || str.charAt(i) == 'b')
+						&& (str.charAt(i + 1) == 'E' || str.charAt(i + 1) == 'e')) {
+			i += 2;
+		}
+
+		long number = 0;
+		int n = 0;
+		for (; i < len; i++) {
+			char c = str.charAt(i);
+			if (c >= '0' && c <= '9') {
+				if (++n > 10) {
+					return Invalid.LENGTH;
+				}
+				number = number * 10 + (c - '0');
+			} else if (!isSeparator(c)) {
+				return Invalid.CHARACTER;
+			}
+		}
+		if (n == 0) {
+			return Invalid.EMPTY;
+		}
+		if (n < 9) {
+			return Invalid.LENGTH;
+		}
+		return (97 - (number / 100) % 97 == number % 100) ? null : Invalid.CHECKSUM;
+	}
+}
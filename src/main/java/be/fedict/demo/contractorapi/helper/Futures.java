@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi.helper;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+import javax.ws.rs.NotFoundException;
+import javax.ws.rs.ProcessingException;
+
+/**
+ * Helper class for asynchronous results
+ * 
+ * @author Bart Hanssens
+ */
+public class Futures {
+	private Futures() {
+	}
+
+	/**
+	 * Get the actual exception of a failed future
+	 * 
+	 * @param t exception, possibly wrapped
+	 * @return unwrapped exception
+	 */
+	public static Throwable unwrap(Throwable t) {
+		while ((t instanceof CompletionException || t instanceof ExecutionException) && t.getCause() != null) {
+			t = t.getCause();
+		}
+		return t;
+	}
+
+	/**
+	 * Get the exception thrown while processing the response of the webform, e.g. by a reader.
+	 * Asynchronous calls wrap this exception more than once.
+	 * 
+	 * @param t exception, possibly wrapped
+	 * @return cause
+	 */
+	public static Throwable processingCause(Throwable t) {
+		t = unwrap(t);
+		while (t instanceof ProcessingException && t.getCause() != null) {
+			t = t.getCause();
+		}
+		return t;
+	}
+
+	/**
+	 * Check if an exception was caused by a specific type of exception
+	 * 
+	 * @param t exception
+	 * @param cause type of the cause
+	 * @return true if caused by this type
+	 */
+	public static boolean causedBy(Throwable t, Class<? extends Throwable> cause) {
+		for (Throwable c = t; c != null; c = c.getCause()) {
+			if (cause.isInstance(c)) {
+				return true;
+			}
+			if (c.getCause() == c) {
+				break;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Check if the webform returned a "not found"
+	 * 
+	 * @param t exception, possibly wrapped
+	 * @return true if not found
+	 */
+	public static boolean isNotFound(Throwable t) {
+		return unwrap(t) instanceof ProcessingException && causedBy(t, NotFoundException.class);
+	}
+
+	/**
+	 * Check if the session used for the webform has expired
+	 * 
+	 * @param t exception, possibly wrapped
+	 * @return true if expired
+	 */
+	public static boolean isExpired(Throwable t) {
+		return unwrap(t) instanceof ProcessingException && causedBy(t, SessionExpiredException.class);
+	}
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi.helper;
+
+import java.io.IOException;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+import javax.ws.rs.sse.OutboundSseEvent;
+
+import org.eclipse.microprofile.metrics.Timer;
+
+/**
+ * Helper class to measure the time needed to serialize JSON and CBOR responses of the API.
+ * Streamed responses (export, server-sent events) are not measured, these mostly measure the client.
+ * 
+ * @author Bart Hanssens
+ */
+@Provider
+public class SerializationTimer implements WriterInterceptor {
+	/**
+	 * Get the name of the stage, or null when the response should not be measured
+	 * 
+	 * @param ctx context
+	 * @return name or null
+	 */
+	private static String stage(WriterInterceptorContext ctx) {
+		Object entity = ctx.getEntity();
+		if (entity instanceof StreamingOutput || entity instanceof OutboundSseEvent) {
+			return null;
+		}
+		MediaType type = ctx.getMediaType();
+		if (type == null) {
+			return null;
+		}
+		if (type.isCompatible(MediaType.APPLICATION_JSON_TYPE)) {
+			return StageMetrics.SERIALIZE;
+		}
+		if ("cbor".equals(type.getSubtype())) {
+			return StageMetrics.SERIALIZE_CBOR;
+		}
+		return null;
+	}
+
+	@Override
+	public void aroundWriteTo(WriterInterceptorContext ctx) throws IOException, WebApplicationException {
+		String stage = stage(ctx);
+		if (stage == null) {
+			ctx.proceed();
+			return;
+		}
+		Timer.Context time = StageMetrics.timer(stage).time();
+		try {
+			ctx.proceed();
+		} finally {
+			time.stop();
+		}
+	}
+}
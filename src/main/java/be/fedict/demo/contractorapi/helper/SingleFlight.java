@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi.helper;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * Coalesce concurrent calls for the same key into one call, sharing the result or error.
+ * Results are not kept once the call completes.
+ * 
+ * @author Bart Hanssens
+ * @param <K> key
+ * @param <V> result
+ */
+public class SingleFlight<K, V> {
+	private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+	/**
+	 * Start a call, or join the call for the same key that is still in progress
+	 * 
+	 * @param key key
+	 * @param fn function starting the call
+	 * @return result
+	 */
+	public CompletionStage<V> run(K key, Function<K, CompletionStage<V>> fn) {
+		CompletableFuture<V> promise = new CompletableFuture<>();
+		CompletableFuture<V> existing = inFlight.putIfAbsent(key, promise);
+		if (existing != null) {
+			// callers cannot complete the shared future
+			return existing.minimalCompletionStage();
+		}
+		CompletionStage<V> call;
+		try {
+			call = fn.apply(key);
+		} catch (RuntimeException e) {
+			inFlight.remove(key, promise);
+			promise.completeExceptionally(e);
+			return promise;
+		}
+		call.whenComplete((val, t) -> {
+			inFlight.remove(key, promise);
+			if (t == null) {
+				promise.complete(val);
+			} else {
+				promise.completeExceptionally(Futures.unwrap(t));
+			}
+		});
+		return promise;
+	}
+
+	/**
+	 * Number of calls in progress
+	 * 
+	 * @return number of calls
+	 */
+	public int size() {
+		return inFlight.size();
+	}
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi.helper;
+
+import io.smallrye.metrics.MetricRegistries;
+
+import java.util.concurrent.CompletionStage;
+import java.util.function.Supplier;
+
+import org.eclipse.microprofile.metrics.ConcurrentGauge;
+import org.eclipse.microprofile.metrics.Gauge;
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.MetricType;
+import org.eclipse.microprofile.metrics.Tag;
+import org.eclipse.microprofile.metrics.Timer;
+
+/**
+ * Helper class for latency and number of calls in progress per processing stage.
+ * This also works for providers (e.g. readers) that are not CDI beans.
+ * 
+ * @author Bart Hanssens
+ */
+public class StageMetrics {
+	public static final String FORM = "upstream.form";
+	public static final String SEARCH = "upstream.search";
+	public static final String PARSE_FORM = "parse.form";
+	public static final String PARSE_RESULT = "parse.result";
+	public static final String SERIALIZE = "serialize.json";
+	public static final String SERIALIZE_CBOR = "serialize.cbor";
+	public static final String ERRORS = "upstream.errors";
+	public static final String REJECTED = "upstream.rejected";
+	public static final String BREAKER_REJECTED = "upstream.breaker.rejected";
+	public static final String POOL_WAIT = "http.pool.wait";
+	public static final String INVALID_ID = "request.invalid.id";
+
+	private StageMetrics() {
+	}
+
+	private static MetricRegistry registry() {
+		return MetricRegistries.get(MetricRegistry.Type.APPLICATION);
+	}
+
+	/**
+	 * Get the timer for a stage
+	 * 
+	 * @param stage name of the stage
+	 * @return timer
+	 */
+	public static Timer timer(String stage) {
+		return registry().timer(stage);
+	}
+
+	private static ConcurrentGauge inFlight(String stage) {
+		return registry().concurrentGauge(stage + ".inflight");
+	}
+
+	/**
+	 * Measure a blocking call
+	 * 
+	 * @param <T> result type
+	 * @param stage name of the stage
+	 * @param call call
+	 * @return result of the call
+	 */
+	public static <T> T time(String stage, Supplier<T> call) {
+		ConcurrentGauge gauge = inFlight(stage);
+		Timer.Context ctx = timer(stage).time();
+		gauge.inc();
+		try {
+			return call.get();
+		} finally {
+			gauge.dec();
+			ctx.stop();
+		}
+	}
+
+	/**
+	 * Measure an asynchronous call until it completes
+	 * 
+	 * @param <T> result type
+	 * @param stage name of the stage
+	 * @param call call
+	 * @return result of the call
+	 */
+	public static <T> CompletionStage<T> timeAsync(String stage, Supplier<CompletionStage<T>> call) {
+		ConcurrentGauge gauge = inFlight(stage);
+		Timer.Context ctx = timer(stage).time();
+		gauge.inc();
+		try {
+			return call.get().whenComplete((val, t) -> {
+				gauge.dec();
+				ctx.stop();
+			});
+		} catch (RuntimeException e) {
+			gauge.dec();
+			ctx.stop();
+			throw e;
+		}
+	}
+
+	/**
+	 * Register a gauge, replacing an existing gauge with the same name
+	 * 
+	 * @param name name of the gauge
+	 * @param description description
+	 * @param value function returning the current value
+	 */
+	public static void gauge(String name, String description, Gauge<Number> value) {
+		MetricRegistry registry = registry();
+		registry.remove(name);
+		registry.register(Metadata.builder().withName(name).withDescription(description)
+											.withType(MetricType.GAUGE).build(), value);
+	}
+
+	/**
+	 * Increase a counter
+	 * 
+	 * @param name name of the counter
+	 * @param tags optional tags
+	 */
+	public static void count(String name, Tag... tags) {
+		registry().counter(name, tags).inc();
+	}
+
+	/**
+	 * Count an error returned to the client of the API
+	 * 
+	 * @param status HTTP status
+	 * @param cause cause of the error
+	 */
+	public static void error(int status, Throwable cause) {
+		registry().counter(ERRORS, new Tag("status", String.valueOf(status)),
+									new Tag("cause", cause.getClass().getSimpleName())).inc();
+	}
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi;
+
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import static io.restassured.RestAssured.given;
+import org.eclipse.jetty.server.Response;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+
+import org.junit.jupiter.api.Test;
+
+
+/**
+ *
+ * @author Bart Hanssens
+ */
+@QuarkusTest
+@QuarkusTestResource(WiremockContractors.class)
+public class AdminResourceTest  {
+
+	@Test
+	public void testCacheHit() {
+		given().when().delete("/admin/cache").then().statusCode(Response.SC_NO_CONTENT);
+
+		given().when().get("/contractor/0123.456.749").then().statusCode(Response.SC_OK);
+		given().when().get("/contractor/BE 0123456749").then().statusCode(Response.SC_OK);
+
+		given()
+			.when().get("/admin/cache")
+			.then().statusCode(Response.SC_OK)
+					.body("hits", greaterThanOrEqualTo(1))
+					.body("size", equalTo(1));
+	}
+
+	@Test
+	public void testInvalidate() {
+		given()
+			.when().delete("/admin/cache/0123.456.749")
+			.then().statusCode(Response.SC_NO_CONTENT);
+	}
+
+	@Test
+	public void testHttpStats() {
+		given().when().get("/contractor/0123.456.749").then().statusCode(Response.SC_OK);
+
+		given()
+			.when().get("/admin/http")
+			.then().statusCode(Response.SC_OK)
+					.body("leases", greaterThanOrEqualTo(1))
+					.body("max", equalTo(64));
+	}
+
+	@Test
+	public void testLoad() {
+		given()
+			.when().post("/admin/load?postalCode=1000")
+			.then().statusCode(Response.SC_OK)
+					.body("contractors", equalTo(3));
+
+		given()
+			.when().post("/admin/load?name=doe")
+			.then().statusCode(Response.SC_BAD_REQUEST);
+		given()
+			.when().post("/admin/load")
+			.then().statusCode(Response.SC_BAD_REQUEST);
+	}
+}
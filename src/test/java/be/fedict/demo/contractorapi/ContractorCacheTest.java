@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi;
+
+import be.fedict.demo.contractorapi.helper.ContractorDAO;
+import be.fedict.demo.contractorapi.helper.StaleContractorDAO;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import javax.ws.rs.NotFoundException;
+import javax.ws.rs.ProcessingException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Serve last known data when upstream fails or is too slow
+ * 
+ * @author Bart Hanssens
+ */
+public class ContractorCacheTest {
+	static ContractorCache cache() {
+		ContractorCache cache = new ContractorCache();
+		cache.maxSize = 10;
+		// expire immediately, so every lookup goes to the loader
+		cache.ttl = Duration.ofNanos(1);
+		cache.negativeTtl = Duration.ofNanos(1);
+		cache.staleMaxSize = 10;
+		cache.staleMaxAge = Duration.ofDays(1);
+		cache.staleTimeout = Duration.ofMillis(50);
+		cache.changes = new ContractorChanges();
+		cache.changes.maxSize = 10;
+		cache.changes.init();
+		cache.init();
+		return cache;
+	}
+
+	private static ContractorDAO contractor() {
+		ContractorDAO c = new ContractorDAO();
+		c.setCbeId("0123.456.749");
+		c.setName("Peeters");
+		return c;
+	}
+
+	private static ContractorDAO get(ContractorCache cache, CompletableFuture<ContractorDAO> upstream) {
+		return cache.get("0123456749", k -> upstream).toCompletableFuture().join();
+	}
+
+	@Test
+	public void testStale() {
+		ContractorCache cache = cache();
+		ContractorDAO fresh = get(cache, CompletableFuture.completedFuture(contractor()));
+		assertFalse(fresh instanceof StaleContractorDAO);
+
+		// upstream fails
+		ContractorDAO stale = get(cache, CompletableFuture.failedFuture(new ProcessingException("down")));
+		assertTrue(stale instanceof StaleContractorDAO);
+		assertEquals("Peeters", stale.getName());
+
+		// upstream too slow, but keeps running in the background
+		CompletableFuture<ContractorDAO> slow = new CompletableFuture<>();
+		assertTrue(get(cache, slow) instanceof StaleContractorDAO);
+		assertEquals(2L, cache.stats().get("stale"));
+	}
+
+	@Test
+	public void testPutDuringLookup() {
+		ContractorCache cache = cache();
+		cache.get("0123456749", k -> new CompletableFuture<>());
+		// not shared with the lookup in progress
+		cache.put("0123456749", contractor());
+		assertEquals(1, cache.known(null).count());
+	}
+
+	@Test
+	public void testNotFound() {
+		ContractorCache cache = cache();
+		get(cache, CompletableFuture.completedFuture(contractor()));
+
+		CompletionException ce = assertThrows(CompletionException.class, 
+			() -> get(cache, CompletableFuture.failedFuture(new ProcessingException(new NotFoundException()))));
+		assertTrue(ce.getCause() instanceof ProcessingException);
+		// no longer known
+		assertThrows(CompletionException.class, 
+			() -> get(cache, CompletableFuture.failedFuture(new ProcessingException("down"))));
+	}
+}
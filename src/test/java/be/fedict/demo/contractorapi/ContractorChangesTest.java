@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi;
+
+import be.fedict.demo.contractorapi.helper.CatClasses;
+import be.fedict.demo.contractorapi.helper.ChangeDAO;
+import be.fedict.demo.contractorapi.helper.ContractorDAO;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Detect changes and resume from a cursor
+ * 
+ * @author Bart Hanssens
+ */
+public class ContractorChangesTest {
+	private static ContractorDAO contractor(String street) {
+		ContractorDAO c = new ContractorDAO();
+		c.setCbeId("0123.456.749");
+		c.setStreet(street);
+		c.setTillDate(ContractorDAO.parseDate("2025-12-31"));
+		c.setCatClassCodes(CatClasses.parse("D (5) E (1)"));
+		return c;
+	}
+
+	@Test
+	public void testDiff() {
+		ContractorDAO old = contractor("Kerkstraat 1");
+		ContractorDAO fresh = contractor("Kerkstraat 2");
+		fresh.setTillDate(null);
+		// same categories in another order
+		fresh.setCatClassCodes(CatClasses.parse("E (1) D (5)"));
+
+		ChangeDAO change = ContractorChanges.diff(old, fresh);
+		assertEquals("0123.456.749", change.getCbeId());
+		assertEquals(List.of("street", "tillDate"), List.copyOf(change.getBefore().keySet()));
+		assertEquals("2025-12-31", change.getBefore().get("tillDate"));
+		assertNull(change.getAfter().get("tillDate"));
+		assertEquals("Kerkstraat 2", change.getAfter().get("street"));
+
+		assertNull(ContractorChanges.diff(old, contractor("Kerkstraat 1")));
+	}
+
+	@Test
+	public void testSince() {
+		ContractorChanges changes = new ContractorChanges();
+		changes.maxSize = 3;
+		changes.init();
+
+		// new contractors are not changes
+		changes.record(null, contractor("Straat 0"));
+		assertEquals(0, changes.getLatest());
+
+		for (int i = 1; i <= 5; i++) {
+			changes.record(contractor("Straat " + (i - 1)), contractor("Straat " + i));
+		}
+		assertEquals(5, changes.getLatest());
+		assertEquals(1, changes.since(4).size());
+		assertTrue(changes.since(5).isEmpty());
+
+		// only the last 3 changes are kept
+		List<ChangeDAO> all = changes.since(0);
+		assertEquals(3, all.size());
+		assertEquals(3, all.get(0).getId());
+		assertEquals("Straat 5", all.get(2).getAfter().get("street"));
+		changes.close();
+	}
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi;
+
+import be.fedict.demo.contractorapi.helper.ContractorDAO;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Rebuild the indexes when the mirror changes
+ * 
+ * @author Bart Hanssens
+ */
+public class ContractorIndexTest {
+	private static ContractorIndex index() {
+		ContractorIndex index = new ContractorIndex();
+		index.mirror = new ContractorMirror();
+		index.mirror.enabled = true;
+		index.mirror.changes = new ContractorChanges();
+		index.mirror.changes.maxSize = 10;
+		index.mirror.changes.init();
+		return index;
+	}
+
+	private static ContractorDAO contractor(String name) {
+		return contractor(name, LocalDate.now().plusDays(5));
+	}
+
+	private static ContractorDAO contractor(String name, LocalDate till) {
+		ContractorDAO c = new ContractorDAO();
+		c.setCbeId("0123.456.749");
+		c.setName(name);
+		c.setTillDate(till);
+		return c;
+	}
+
+	private static List<String> names(List<ContractorDAO> list) {
+		return list.stream().map(ContractorDAO::getName).collect(Collectors.toList());
+	}
+
+	@Test
+	public void testReplaced() {
+		ContractorIndex index = index();
+		index.mirror.add(contractor("Peeters Dakwerken"));
+		index.rebuild();
+		assertEquals(List.of("Peeters Dakwerken"), names(index.searchName("peeters", 10)));
+
+		// same number of contractors, but different data
+		index.mirror.add(contractor("Janssens Dakwerken"));
+		index.rebuild();
+		assertEquals(List.of("Janssens Dakwerken"), names(index.searchName("janssens", 10)));
+		assertTrue(index.searchName("peeters", 10).isEmpty());
+	}
+
+	@Test
+	public void testRenewed() {
+		ContractorIndex index = index();
+		index.window = Period.ofDays(14);
+		index.interval = Duration.ofDays(1);
+		index.maxRefresh = 10;
+		index.lookup = new ContractorLookup() {
+			@Override
+			public ContractorDAO refresh(String id) {
+				return index.mirror.add(contractor("Peeters Dakwerken", LocalDate.now().plusYears(1)));
+			}
+		};
+		index.mirror.add(contractor("Peeters Dakwerken"));
+		index.rebuild();
+
+		LocalDate today = LocalDate.now();
+		assertEquals(1, index.expiring(today, today.plus(index.window), null, 10).getContractors().size());
+		index.refreshExpiring();
+		assertTrue(index.expiring(today, today.plus(index.window), null, 10).getContractors().isEmpty());
+	}
+}
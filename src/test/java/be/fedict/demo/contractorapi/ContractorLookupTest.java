@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi;
+
+import be.fedict.demo.contractorapi.helper.ContractorDAO;
+import be.fedict.demo.contractorapi.helper.FormDAO;
+import be.fedict.demo.contractorapi.helper.LimitExceededException;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Lookups using pooled sessions
+ * 
+ * @author Bart Hanssens
+ */
+public class ContractorLookupTest {
+	private static UpstreamLimiter limiter(Duration maxWait) {
+		UpstreamLimiter limiter = new UpstreamLimiter();
+		limiter.initial = 1;
+		limiter.min = 1;
+		limiter.max = 1;
+		limiter.latency = Duration.ofSeconds(1);
+		limiter.backoff = 0.5;
+		limiter.maxWait = maxWait;
+		limiter.retryAfter = 1;
+		limiter.breaker = new CircuitBreaker();
+		limiter.breaker.failures = 100;
+		limiter.breaker.open = Duration.ofSeconds(30);
+		limiter.init();
+		return limiter;
+	}
+
+	private static ContractorLookup lookup(UpstreamLimiter limiter) {
+		SessionPool sessions = new SessionPool();
+		sessions.poolSize = 4;
+		sessions.maxAge = Duration.ofMinutes(10);
+		FormDAO form = new FormDAO();
+		form.setCookies(Collections.emptyMap());
+		sessions.release(form);
+
+		ContractorLookup lookup = new ContractorLookup();
+		lookup.limiter = limiter;
+		lookup.sessions = sessions;
+		return lookup;
+	}
+
+	@Test
+	public void testRejectedKeepsSession() {
+		UpstreamLimiter limiter = limiter(Duration.ofMillis(10));
+		ContractorLookup lookup = lookup(limiter);
+
+		// the only permit is in use, so the search is rejected without contacting upstream
+		limiter.callAsync(() -> new CompletableFuture<>());
+		CompletionException ce = assertThrows(CompletionException.class, 
+									() -> lookup.fetch("0123456749").toCompletableFuture().join());
+		assertTrue(ce.getCause() instanceof LimitExceededException);
+		assertEquals(1, lookup.sessions.size());
+	}
+
+	@Test
+	public void testWaitingForLimiter() {
+		UpstreamLimiter limiter = limiter(Duration.ofSeconds(5));
+		ContractorLookup lookup = lookup(limiter);
+		ContractorDAO found = new ContractorDAO();
+		lookup.search = (Search) Proxy.newProxyInstance(Search.class.getClassLoader(), 
+			new Class<?>[] { Search.class }, (proxy, method, args) -> found);
+
+		// the only permit is released after a while, the blocking search waits for it
+		CompletableFuture<Object> busy = new CompletableFuture<>();
+		limiter.callAsync(() -> busy);
+		CompletableFuture.delayedExecutor(100, TimeUnit.MILLISECONDS).execute(() -> busy.complete(null));
+
+		assertSame(found, lookup.fetchWaiting("0123456749"));
+		assertEquals(1, lookup.sessions.size());
+	}
+
+	@Test
+	public void testBatchWaitingForLimiter() {
+		UpstreamLimiter limiter = limiter(Duration.ofSeconds(5));
+		ContractorLookup lookup = lookup(limiter);
+		ContractorDAO found = new ContractorDAO();
+		found.setCbeId("0123.456.749");
+		lookup.search = (Search) Proxy.newProxyInstance(Search.class.getClassLoader(), 
+			new Class<?>[] { Search.class }, (proxy, method, args) -> found);
+		lookup.mirror = new ContractorMirror();
+		lookup.snapshot = new ContractorSnapshot();
+		lookup.peers = new PeerLookup();
+		lookup.cache = ContractorCacheTest.cache();
+
+		CompletableFuture<Object> busy = new CompletableFuture<>();
+		limiter.callAsync(() -> busy);
+		CompletableFuture.delayedExecutor(100, TimeUnit.MILLISECONDS).execute(() -> busy.complete(null));
+
+		assertEquals("0123.456.749", lookup.getWaiting("0123456749").getCbeId());
+	}
+}
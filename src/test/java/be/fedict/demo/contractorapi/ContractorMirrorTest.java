@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi;
+
+import be.fedict.demo.contractorapi.helper.ContractorDAO;
+import be.fedict.demo.contractorapi.helper.FormDAO;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Only remove contractors from the mirror after a complete refresh
+ * 
+ * @author Bart Hanssens
+ */
+public class ContractorMirrorTest {
+	private static ContractorDAO contractor(String id) {
+		ContractorDAO c = new ContractorDAO();
+		c.setCbeId(id);
+		return c;
+	}
+
+	/**
+	 * Mirror with two contractors, refreshed from a webform returning the first page and the next pages
+	 * 
+	 * @param first first page
+	 * @param next next pages
+	 * @return mirror
+	 */
+	private static ContractorMirror mirror(List<ContractorDAO> first, List<ContractorDAO> next) {
+		UpstreamLimiter limiter = new UpstreamLimiter();
+		limiter.initial = 1;
+		limiter.min = 1;
+		limiter.max = 1;
+		limiter.latency = Duration.ofSeconds(1);
+		limiter.backoff = 0.5;
+		limiter.maxWait = Duration.ofSeconds(1);
+		limiter.retryAfter = 1;
+		limiter.breaker = new CircuitBreaker();
+		limiter.breaker.failures = 100;
+		limiter.breaker.open = Duration.ofSeconds(30);
+		limiter.init();
+
+		FormDAO form = new FormDAO();
+		form.setCookies(Collections.emptyMap());
+		Search search = (Search) Proxy.newProxyInstance(Search.class.getClassLoader(), 
+			new Class<?>[] { Search.class }, (proxy, method, args) -> {
+				switch (method.getName()) {
+					case "getSearchForm":
+						return form;
+					case "getContractors":
+						return first;
+					default:
+						return next;
+				}
+			});
+
+		SessionPool sessions = new SessionPool();
+		sessions.search = search;
+		sessions.limiter = limiter;
+		sessions.poolSize = 1;
+		sessions.maxAge = Duration.ofMinutes(10);
+
+		ContractorMirror mirror = new ContractorMirror();
+		mirror.enabled = true;
+		mirror.search = search;
+		mirror.sessions = sessions;
+		mirror.limiter = limiter;
+		mirror.pageSize = 1;
+		mirror.maxPages = 2;
+		mirror.changes = new ContractorChanges();
+		mirror.changes.maxSize = 10;
+		mirror.changes.init();
+
+		mirror.add(contractor("0111.222.376"));
+		mirror.add(contractor("0222.333.403"));
+		return mirror;
+	}
+
+	@Test
+	public void testNoResults() {
+		ContractorMirror mirror = mirror(Collections.emptyList(), Collections.emptyList());
+		mirror.load();
+		assertEquals(2, mirror.size());
+		assertNull(mirror.getLastRefresh());
+	}
+
+	@Test
+	public void testMaxPages() {
+		// the webform keeps returning new contractors, so the last page is never reached
+		ContractorMirror mirror = mirror(Arrays.asList(contractor("0123.456.749")), 
+										Arrays.asList(contractor("0333.444.555"), contractor("0444.555.666")));
+		mirror.load();
+		assertNotNull(mirror.get("0111222376"));
+		assertNotNull(mirror.get("0123456749"));
+	}
+
+	@Test
+	public void testComplete() {
+		ContractorMirror mirror = mirror(Arrays.asList(contractor("0111.222.376")), Collections.emptyList());
+		mirror.load();
+		assertEquals(1, mirror.size());
+		assertNull(mirror.get("0222333403"));
+		assertNotNull(mirror.getLastRefresh());
+	}
+}
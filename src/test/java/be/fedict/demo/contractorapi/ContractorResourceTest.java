@@ -1,66 +1,319 @@
-/*
- * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
- * All rights reserved.
- *
- * Redistribution and use in source and binary forms, with or without
- * modification, are permitted provided that the following conditions are met:
- *
- * * Redistributions of source code must retain the above copyright notice, this
- *   list of conditions and the following disclaimer.
- * * Redistributions in binary form must reproduce the above copyright notice,
- *   this list of conditions and the following disclaimer in the documentation
- *   and/or other materials provided with the distribution.
- *
- * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
- * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
- * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
- * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
- * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
- * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
- * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
- * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
- * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
- * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
- * POSSIBILITY OF SUCH DAMAGE.
- */
-package be.fedict.demo.contractorapi;
-
-import io.quarkus.test.common.QuarkusTestResource;
-import io.quarkus.test.junit.QuarkusTest;
-import static io.restassured.RestAssured.given;
-import org.eclipse.jetty.server.Response;
-import static org.hamcrest.Matchers.equalTo;
-
-import org.junit.jupiter.api.Test;
-
-
-/**
- *
- * @author Bart Hanssens
- */
-@QuarkusTest
-@QuarkusTestResource(WiremockContractors.class)
-public class ContractorResourceTest  {
-
-	@Test
-	public void testFound() {
-		given()
-			.when().get("/contractor/0123.456.789")
-			.then().statusCode(Response.SC_OK)
-					.body("municipality", equalTo("Brussel"));
-	}
-
-	@Test
-	public void testNotFound() {
-		given()
-			.when().get("/contractor/9000.800.700")
-			.then().statusCode(Response.SC_NOT_FOUND);
-	}
-	
-	@Test
-	public void testBadRequest() {
-		given()
-			.when().get("/contractor/987")
-			.then().statusCode(Response.SC_BAD_REQUEST);
-	}	
-}
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi;
+
+import be.fedict.demo.contractorapi.helper.ContractorDAO;
+import be.fedict.demo.contractorapi.helper.StaleContractorDAO;
+
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.common.http.TestHTTPResource;
+import io.quarkus.test.junit.QuarkusTest;
+import static io.restassured.RestAssured.given;
+
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Stream;
+import javax.inject.Inject;
+import javax.ws.rs.core.MediaType;
+import org.eclipse.jetty.server.Response;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+
+/**
+ *
+ * @author Bart Hanssens
+ */
+@QuarkusTest
+@QuarkusTestResource(WiremockContractors.class)
+public class ContractorResourceTest  {
+	@Inject
+	ContractorChanges changes;
+
+	@TestHTTPResource("/contractor/changes")
+	URL changesUrl;
+
+	@Test
+	public void testFound() {
+		given()
+			.when().get("/contractor/0123.456.749")
+			.then().statusCode(Response.SC_OK)
+					.body("municipality", equalTo("Brussel"));
+	}
+
+	@Test
+	public void testCbor() {
+		byte[] body = given()
+			.header("Accept", CborBodyWriter.APPLICATION_CBOR)
+			.when().get("/contractor/0123.456.749")
+			.then().statusCode(Response.SC_OK)
+					.contentType(CborBodyWriter.APPLICATION_CBOR)
+					.extract().asByteArray();
+		// map with 9 fields: catClasses, 7 strings and fromDate
+		assertEquals((byte) 0xA9, body[0]);
+		// text of 7 bytes starts with 0x67 ('g')
+		assertTrue(new String(body, StandardCharsets.UTF_8).contains("municipalitygBrussel"));
+
+		given()
+			.when().get("/contractor/0123.456.749")
+			.then().statusCode(Response.SC_OK)
+					.contentType(MediaType.APPLICATION_JSON);
+	}
+
+	@Test
+	public void testExport() {
+		given()
+			.when().get("/contractor/0123.456.749")
+			.then().statusCode(Response.SC_OK);
+
+		given()
+			.when().get("/contractor/export?category=a")
+			.then().statusCode(Response.SC_OK)
+					.contentType("application/x-ndjson")
+					.body(containsString("\"municipality\":\"Brussel\""), endsWith("}\n"));
+
+		// decompressed by the client
+		given()
+			.header("Accept-Encoding", "gzip")
+			.when().get("/contractor/export?modifiedSince=2020-01-01T00:00:00Z")
+			.then().statusCode(Response.SC_OK)
+					.header("Content-Encoding", "gzip")
+					.body(containsString("\"cbeId\""));
+
+		given()
+			.when().get("/contractor/export?category=A&class=3")
+			.then().statusCode(Response.SC_OK)
+					.body(equalTo(""));
+
+		given()
+			.when().get("/contractor/export?modifiedSince=2999-01-01T00:00:00Z")
+			.then().statusCode(Response.SC_OK)
+					.body(equalTo(""));
+
+		given()
+			.when().get("/contractor/export?class=3")
+			.then().statusCode(Response.SC_BAD_REQUEST);
+	}
+
+	@Test
+	public void testChanges() throws Exception {
+		ContractorDAO old = new ContractorDAO();
+		old.setCbeId("0123.456.749");
+		old.setStreet("Kerkstraat 1");
+		ContractorDAO fresh = new ContractorDAO(old);
+		fresh.setStreet("Kerkstraat 2");
+		changes.record(old, fresh);
+
+		HttpRequest req = HttpRequest.newBuilder(changesUrl.toURI())
+									.header("Last-Event-ID", String.valueOf(changes.getLatest() - 1)).build();
+		HttpResponse<Stream<String>> resp = HttpClient.newHttpClient().send(req, HttpResponse.BodyHandlers.ofLines());
+		assertEquals(Response.SC_OK, resp.statusCode());
+		try (Stream<String> lines = resp.body()) {
+			String data = lines.filter(l -> l.startsWith("data:")).findFirst().orElse("");
+			assertTrue(data.contains("\"after\":{\"street\":\"Kerkstraat 2\"}"), data);
+		}
+	}
+
+	@Test
+	public void testETag() {
+		String etag = given()
+			.when().get("/contractor/0123.456.749")
+			.then().statusCode(Response.SC_OK)
+					.header("Cache-Control", containsString("max-age=300"))
+					.extract().header("ETag");
+		assertNotNull(etag);
+
+		given()
+			.header("If-None-Match", etag)
+			.when().get("/contractor/BE 0123456749")
+			.then().statusCode(Response.SC_NOT_MODIFIED)
+					.header("ETag", equalTo(etag));
+
+		given()
+			.header("If-None-Match", "\"other\"")
+			.when().get("/contractor/0123.456.749")
+			.then().statusCode(Response.SC_OK);
+
+		// different body, different tag
+		String cbor = given()
+			.header("Accept", CborBodyWriter.APPLICATION_CBOR)
+			.when().get("/contractor/0123.456.749")
+			.then().statusCode(Response.SC_OK)
+					.extract().header("ETag");
+		assertNotNull(cbor);
+		assertNotEquals(etag, cbor);
+
+		given()
+			.header("Accept", CborBodyWriter.APPLICATION_CBOR)
+			.header("If-None-Match", cbor)
+			.when().get("/contractor/0123.456.749")
+			.then().statusCode(Response.SC_NOT_MODIFIED);
+		given()
+			.header("Accept", CborBodyWriter.APPLICATION_CBOR)
+			.header("If-None-Match", etag)
+			.when().get("/contractor/0123.456.749")
+			.then().statusCode(Response.SC_OK);
+	}
+
+	@Test
+	public void testStaleETag() {
+		ContractorDAO c = new ContractorDAO();
+		c.setCbeId("0123.456.749");
+		assertNotEquals(ContractorResource.etag(c, MediaType.APPLICATION_JSON_TYPE), 
+						ContractorResource.etag(new StaleContractorDAO(c, 10), MediaType.APPLICATION_JSON_TYPE));
+		assertEquals(CborBodyWriter.APPLICATION_CBOR_TYPE, 
+						ContractorResource.select("application/json;q=0.5, application/cbor"));
+		assertEquals(MediaType.APPLICATION_JSON_TYPE, ContractorResource.select("*/*"));
+	}
+
+	@Test
+	public void testAcceptsGzip() {
+		assertTrue(ContractorResource.acceptsGzip("gzip, deflate"));
+		assertTrue(ContractorResource.acceptsGzip("br;q=1.0, gzip;q=0.8"));
+		assertTrue(ContractorResource.acceptsGzip("*"));
+		assertFalse(ContractorResource.acceptsGzip(null));
+		assertFalse(ContractorResource.acceptsGzip("gzip;q=0"));
+		assertFalse(ContractorResource.acceptsGzip("gzip;q=0, *"));
+		assertFalse(ContractorResource.acceptsGzip("identity"));
+	}
+
+	@Test
+	public void testNotFound() {
+		given()
+			.when().get("/contractor/9000.800.739")
+			.then().statusCode(Response.SC_NOT_FOUND);
+	}
+	
+	@Test
+	public void testCborNotFound() {
+		// second request is answered from the negative cache
+		for (int i = 0; i < 2; i++) {
+			given()
+				.header("Accept", CborBodyWriter.APPLICATION_CBOR)
+				.when().get("/contractor/9000.800.739")
+				.then().statusCode(Response.SC_NOT_FOUND)
+						.contentType(MediaType.APPLICATION_JSON)
+						.body("error", notNullValue());
+		}
+	}
+
+	@Test
+	public void testExpiredSession() {
+		given()
+			.when().get("/contractor/0111.222.376")
+			.then().statusCode(Response.SC_OK)
+					.body("municipality", equalTo("Brussel"));
+	}
+
+	@Test
+	public void testBadRequest() {
+		given()
+			.when().get("/contractor/987")
+			.then().statusCode(Response.SC_BAD_REQUEST)
+					.body("error", containsString("digits"));
+		given()
+			.when().get("/contractor/0123.456.789")
+			.then().statusCode(Response.SC_BAD_REQUEST)
+					.body("error", equalTo("Invalid check digits"));
+		given()
+			.when().get("/metrics/application")
+			.then().statusCode(Response.SC_OK)
+					.body(containsString("application_request_invalid_id_total{reason=\"checksum\"}"));
+	}	
+
+	@Test
+	public void testBatch() {
+		given()
+			.contentType(MediaType.APPLICATION_JSON)
+			.body("[\"0123.456.749\", \"BE 0123456749\", \"9000.800.739\", \"987\"]")
+			.when().post("/contractor/batch")
+			.then().statusCode(Response.SC_OK)
+					.body("status", contains(200, 404, 400))
+					.body("[0].contractor.municipality", equalTo("Brussel"));
+
+		// invalid IDs without digits are all reported
+		given()
+			.contentType(MediaType.APPLICATION_JSON)
+			.body("[\"abc\", \"xyz\", \"abc\"]")
+			.when().post("/contractor/batch")
+			.then().statusCode(Response.SC_OK)
+					.body("id", contains("abc", "xyz"))
+					.body("status", contains(400, 400));
+	}
+
+	@Test
+	public void testMetrics() {
+		given().when().get("/contractor/0123.456.749").then().statusCode(Response.SC_OK);
+		given()
+			.header("Accept", CborBodyWriter.APPLICATION_CBOR)
+			.when().get("/contractor/0123.456.749").then().statusCode(Response.SC_OK);
+
+		given()
+			.when().get("/metrics/application")
+			.then().statusCode(Response.SC_OK)
+					.body(containsString("application_upstream_form_seconds_count"))
+					.body(containsString("application_parse_form_seconds_count"))
+					.body(containsString("application_serialize_json_seconds_count"))
+					.body(containsString("application_serialize_cbor_seconds_count"))
+					.body(containsString("application_upstream_limit"));
+	}
+
+	@Test
+	public void testExpiring() {
+		given()
+			.when().get("/contractor/expiring?from=2021-01-01&days=30")
+			.then().statusCode(Response.SC_OK);
+		given()
+			.when().get("/contractor/expiring?from=01/01/2021")
+			.then().statusCode(Response.SC_BAD_REQUEST);
+		given()
+			.when().get("/contractor/expiring?cursor=abc")
+			.then().statusCode(Response.SC_BAD_REQUEST);
+	}
+
+	@Test
+	public void testSearchWithoutMirror() {
+		given()
+			.when().get("/contractor/search?category=D&class=5")
+			.then().statusCode(Response.SC_SERVICE_UNAVAILABLE);
+		given()
+			.when().get("/contractor/name?q=peeters")
+			.then().statusCode(Response.SC_SERVICE_UNAVAILABLE);
+	}
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi;
+
+import be.fedict.demo.contractorapi.helper.ContractorDAO;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Write and read snapshot files
+ * 
+ * @author Bart Hanssens
+ */
+public class ContractorSnapshotTest {
+	@TempDir
+	Path dir;
+
+	private static ContractorDAO contractor(String id, String name) {
+		ContractorDAO c = new ContractorDAO();
+		c.setCbeId(id);
+		c.setName(name);
+		c.setFromDate(LocalDate.of(2019, 1, 1));
+		c.setCatClasses(Collections.singletonMap("D", "5"));
+		return c;
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		Path path = dir.resolve("contractors.snapshot");
+		ContractorSnapshot.write(path, Arrays.asList(contractor("0222.333.403", "B"),
+													contractor("0111.222.376", "Ä")));
+
+		ContractorSnapshot.Mapping m = ContractorSnapshot.open(path);
+		assertEquals(2, m.getCount());
+		assertEquals("Ä", m.get(111222376L).getName());
+		assertEquals("5", m.get(222333403L).getCatClasses().get("D"));
+		assertEquals(contractor("", "").getFromDate(), m.get(222333403L).getFromDate());
+		assertNull(m.get(123456749L));
+	}
+
+	@Test
+	public void testEmpty() throws IOException {
+		Path path = dir.resolve("contractors.snapshot");
+		ContractorSnapshot.write(path, Collections.emptyList());
+
+		ContractorSnapshot.Mapping m = ContractorSnapshot.open(path);
+		assertEquals(0, m.getCount());
+		assertNull(m.get(123456749L));
+	}
+
+	@Test
+	public void testLongString() throws IOException {
+		Path path = dir.resolve("contractors.snapshot");
+		String name = "x".repeat(40_000);
+		ContractorDAO c = contractor("0222.333.403", name);
+		c.setStreet("Wetstraat");
+		ContractorSnapshot.write(path, Arrays.asList(c));
+
+		ContractorSnapshot.Mapping m = ContractorSnapshot.open(path);
+		assertEquals(name, m.get(222333403L).getName());
+		// fields after the long string are read from the right position
+		assertEquals("Wetstraat", m.get(222333403L).getStreet());
+	}
+
+	@Test
+	public void testCorrupt() throws IOException {
+		Path path = dir.resolve("contractors.snapshot");
+		ContractorSnapshot.write(path, Arrays.asList(contractor("0222.333.403", "B")));
+
+		try (RandomAccessFile raf = new RandomAccessFile(path.toFile(), "rw")) {
+			raf.seek(Files.size(path) - 1);
+			raf.write(0x55);
+		}
+		assertThrows(IOException.class, () -> ContractorSnapshot.open(path));
+	}
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi;
+
+import be.fedict.demo.contractorapi.helper.ContractorDAO;
+import be.fedict.demo.contractorapi.helper.PageDAO;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Contractors sorted by expiry date
+ * 
+ * @author Bart Hanssens
+ */
+public class ExpiryIndexTest {
+	private static final ExpiryIndex INDEX = new ExpiryIndex(Arrays.asList(
+		contractor("0222.333.403", "2021-03-01"),
+		contractor("0111.222.376", "2021-02-15"),
+		contractor("0123.456.749", ""),
+		contractor("0333.444.555", "2021-03-01"),
+		contractor("0444.555.666", "2021-04-30")));
+
+	private static ContractorDAO contractor(String id, String till) {
+		ContractorDAO c = new ContractorDAO();
+		c.setCbeId(id);
+		c.setTillDate(ContractorDAO.parseDate(till));
+		return c;
+	}
+
+	private static List<String> ids(PageDAO page) {
+		return page.getContractors().stream().map(ContractorDAO::getCbeId).collect(Collectors.toList());
+	}
+
+	@Test
+	public void testRange() {
+		assertEquals(4, INDEX.size());
+		assertEquals(Arrays.asList("0111.222.376", "0222.333.403", "0333.444.555"), 
+			ids(INDEX.expiring(LocalDate.of(2021, 2, 1), LocalDate.of(2021, 3, 1), null, 10)));
+		assertEquals(Arrays.asList("0444.555.666"), 
+			ids(INDEX.expiring(LocalDate.of(2021, 3, 2), LocalDate.of(2021, 12, 31), null, 10)));
+		assertEquals(Arrays.asList(), 
+			ids(INDEX.expiring(LocalDate.of(2022, 1, 1), LocalDate.of(2022, 12, 31), null, 10)));
+	}
+
+	@Test
+	public void testCursor() {
+		LocalDate from = LocalDate.of(2021, 1, 1);
+		LocalDate till = LocalDate.of(2021, 12, 31);
+		PageDAO first = INDEX.expiring(from, till, null, 2);
+		assertEquals(Arrays.asList("0111.222.376", "0222.333.403"), ids(first));
+
+		PageDAO second = INDEX.expiring(from, till, first.getNext(), 2);
+		assertEquals(Arrays.asList("0333.444.555", "0444.555.666"), ids(second));
+		assertNull(second.getNext());
+	}
+
+	@Test
+	public void testInvalid() {
+		LocalDate from = LocalDate.of(2021, 1, 1);
+		assertThrows(IllegalArgumentException.class, () -> INDEX.expiring(from, from, "abc", 10));
+	}
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Assign IDs to peers
+ * 
+ * @author Bart Hanssens
+ */
+public class HashRingTest {
+	private static final List<String> NODES = 
+		Arrays.asList("http://localhost:8080", "http://localhost:8081", "http://localhost:8082");
+
+	private static String id(int i) {
+		return String.format("%010d", 200_000_000L + i * 7919L);
+	}
+
+	@Test
+	public void testEmpty() {
+		assertNull(new HashRing(Arrays.asList(), 100).owner(id(1)));
+	}
+
+	@Test
+	public void testBalanced() {
+		HashRing ring = new HashRing(NODES, 100);
+		Map<String, Integer> counts = new HashMap<>();
+		for (int i = 0; i < 30_000; i++) {
+			counts.merge(ring.owner(id(i)), 1, Integer::sum);
+		}
+		assertEquals(3, counts.size());
+		for (int count: counts.values()) {
+			assertTrue(count > 7_000 && count < 13_000, "Unbalanced " + counts);
+		}
+	}
+
+	@Test
+	public void testAddNode() {
+		HashRing before = new HashRing(NODES, 100);
+		HashRing after = new HashRing(Arrays.asList("http://localhost:8080", "http://localhost:8081", 
+													"http://localhost:8082", "http://localhost:8083"), 100);
+		int moved = 0;
+		for (int i = 0; i < 10_000; i++) {
+			String owner = after.owner(id(i));
+			if (!owner.equals(before.owner(id(i)))) {
+				// only moves to the new node
+				assertEquals("http://localhost:8083", owner);
+				moved++;
+			}
+		}
+		assertTrue(moved > 1_500 && moved < 3_500, "Moved " + moved);
+	}
+
+	@Test
+	public void testOrder() {
+		HashRing ring = new HashRing(NODES, 100);
+		HashRing reversed = new HashRing(Arrays.asList(NODES.get(2), NODES.get(1), NODES.get(0)), 100);
+		for (int i = 0; i < 1_000; i++) {
+			assertEquals(ring.owner(id(i)), reversed.owner(id(i)));
+		}
+	}
+}
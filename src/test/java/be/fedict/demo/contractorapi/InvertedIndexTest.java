@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi;
+
+import be.fedict.demo.contractorapi.helper.CatClasses;
+import be.fedict.demo.contractorapi.helper.ContractorDAO;
+import be.fedict.demo.contractorapi.helper.PageDAO;
+import be.fedict.demo.contractorapi.helper.QueryDAO;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Search the in-memory indexes
+ * 
+ * @author Bart Hanssens
+ */
+public class InvertedIndexTest {
+	private static final InvertedIndex INDEX = new InvertedIndex(Arrays.asList(
+		contractor("0222.333.403", "1000", "Brussel", "D (5) E (2)", "2019-01-01", ""),
+		contractor("0111.222.376", "1210", "Sint-Joost-ten-Node", "D (7)", "2019-01-01", "2020-12-31"),
+		contractor("0123.456.749", "9000", "Gent", "D (6)", "2019-01-01", ""),
+		contractor("0333.444.555", "1050", "Elsene", "D (3) D24 (8)", "2021-06-01", "")));
+
+	private static ContractorDAO contractor(String id, String postal, String municipality, String cats, 
+											String from, String till) {
+		ContractorDAO c = new ContractorDAO();
+		c.setCbeId(id);
+		c.setPostalCode(postal);
+		c.setMunicipality(municipality);
+		c.setCatClassCodes(CatClasses.parse(cats));
+		c.setFromDate(ContractorDAO.parseDate(from));
+		c.setTillDate(ContractorDAO.parseDate(till));
+		return c;
+	}
+
+	private static List<String> ids(PageDAO page) {
+		return page.getContractors().stream().map(ContractorDAO::getCbeId).collect(Collectors.toList());
+	}
+
+	private static QueryDAO query(int limit) {
+		QueryDAO q = new QueryDAO();
+		q.setLimit(limit);
+		return q;
+	}
+
+	@Test
+	public void testCategoryPostal() {
+		QueryDAO q = query(10);
+		q.setCategory("D");
+		q.setMinClass(5);
+		q.setPostalFrom(1000);
+		q.setPostalTo(1299);
+		assertEquals(Arrays.asList("0111.222.376", "0222.333.403"), ids(INDEX.search(q)));
+
+		q.setMunicipality("BRUSSEL ");
+		assertEquals(Arrays.asList("0222.333.403"), ids(INDEX.search(q)));
+	}
+
+	@Test
+	public void testValidOn() {
+		QueryDAO q = query(10);
+		q.setValidOn(LocalDate.of(2021, 1, 1));
+		assertEquals(Arrays.asList("0123.456.749", "0222.333.403"), ids(INDEX.search(q)));
+	}
+
+	@Test
+	public void testCursor() {
+		QueryDAO q = query(2);
+		q.setCategory("d");
+		PageDAO first = INDEX.search(q);
+		assertEquals(Arrays.asList("0111.222.376", "0123.456.749"), ids(first));
+
+		q.setCursor(first.getNext());
+		PageDAO second = INDEX.search(q);
+		assertEquals(Arrays.asList("0222.333.403", "0333.444.555"), ids(second));
+		assertNull(second.getNext());
+	}
+
+	@Test
+	public void testInvalid() {
+		QueryDAO q = query(10);
+		q.setCategory("DD");
+		assertThrows(IllegalArgumentException.class, () -> INDEX.search(q));
+		q.setCategory(null);
+		q.setMinClass(5);
+		assertThrows(IllegalArgumentException.class, () -> INDEX.search(q));
+	}
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi;
+
+import be.fedict.demo.contractorapi.helper.ContractorDAO;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Search contractors by name
+ * 
+ * @author Bart Hanssens
+ */
+public class NameIndexTest {
+	private static final NameIndex INDEX = new NameIndex(Arrays.asList(
+		contractor("0222.333.403", "Bouwwerken Peeters & Zonen BV"),
+		contractor("0111.222.376", "Entreprise Générale Lefèvre SA"),
+		contractor("0123.456.749", "Peeters Dakwerken"),
+		contractor("0333.444.555", "Janssens Bouw")));
+
+	private static ContractorDAO contractor(String id, String name) {
+		ContractorDAO c = new ContractorDAO();
+		c.setCbeId(id);
+		c.setName(name);
+		return c;
+	}
+
+	private static List<String> ids(List<ContractorDAO> list) {
+		return list.stream().map(ContractorDAO::getCbeId).collect(Collectors.toList());
+	}
+
+	@Test
+	public void testWords() {
+		assertArrayEquals(new String[] { "entreprise", "generale", "lefevre", "sa" }, 
+							NameIndex.words(" Entreprise Générale LEFÈVRE S.A"));
+		assertEquals(1, NameIndex.distance("peters", "peeters", 2));
+		assertEquals(3, NameIndex.distance("abc", "xyz", 2));
+	}
+
+	@Test
+	public void testExactAndPrefix() {
+		assertEquals(Arrays.asList("0123.456.749", "0222.333.403"), ids(INDEX.search("peeters", 10)));
+		assertEquals(Arrays.asList("0111.222.376"), ids(INDEX.search("lefevre gen", 10)));
+		// exact word ranks before prefix
+		assertEquals("0333.444.555", INDEX.search("bouw", 10).get(0).getCbeId());
+	}
+
+	@Test
+	public void testFuzzy() {
+		assertEquals(Arrays.asList("0123.456.749", "0222.333.403"), ids(INDEX.search("Peters", 10)));
+		assertEquals(Arrays.asList("0123.456.749"), ids(INDEX.search("peters dakwrken", 10)));
+		assertTrue(INDEX.search("xyz", 10).isEmpty());
+		assertEquals(1, INDEX.search("peeters", 1).size());
+	}
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi;
+
+import be.fedict.demo.contractorapi.helper.ContractorDAO;
+import be.fedict.demo.contractorapi.helper.StaleContractorDAO;
+
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import static io.restassured.RestAssured.given;
+
+import java.util.HashMap;
+import java.util.Map;
+import javax.inject.Inject;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
+
+import org.eclipse.jetty.server.Response;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Share the cache with a reachable and an unreachable peer.
+ * The reachable peer is this instance under another URL.
+ * 
+ * @author Bart Hanssens
+ */
+@QuarkusTest
+@QuarkusTestResource(WiremockContractors.class)
+@TestProfile(PeerLookupTest.Peers.class)
+public class PeerLookupTest {
+	private static final String ALIAS = "http://127.0.0.1:8081";
+	private static final String UNREACHABLE = "http://localhost:1";
+
+	public static class Peers implements QuarkusTestProfile {
+		@Override
+		public Map<String, String> getConfigOverrides() {
+			Map<String, String> map = new HashMap<>();
+			map.put("contractorapi.peers.self", "http://localhost:8081");
+			map.put("contractorapi.peers.urls", "http://localhost:8081," + ALIAS + "," + UNREACHABLE);
+			// spreads the IDs used below over both peers
+			map.put("contractorapi.peers.replicas", "150");
+			return map;
+		}
+	}
+
+	@Inject
+	PeerLookup peers;
+
+	private static void assertMetric(String metric) {
+		given()
+			.when().get("/metrics/application")
+			.then().statusCode(Response.SC_OK)
+					.body(containsString(metric));
+	}
+
+	@Test
+	public void testForwarded() {
+		assertEquals(ALIAS, peers.owner("0123456749"));
+		given()
+			.when().get("/contractor/0123.456.749")
+			.then().statusCode(Response.SC_OK)
+					.body("municipality", equalTo("Brussel"))
+					.body("fromDate", containsString("2019-01-01"));
+		assertMetric("application_peer_forwards_total");
+	}
+
+	@Test
+	public void testNotFound() {
+		given()
+			.when().get("/contractor/9000.800.739")
+			.then().statusCode(Response.SC_NOT_FOUND);
+	}
+
+	@Test
+	public void testUnavailable() {
+		WebApplicationException wae = assertThrows(WebApplicationException.class, 
+			() -> PeerLookup.read(javax.ws.rs.core.Response.status(Response.SC_SERVICE_UNAVAILABLE)
+										.header(HttpHeaders.RETRY_AFTER, 7).build()));
+		assertEquals(Response.SC_SERVICE_UNAVAILABLE, wae.getResponse().getStatus());
+		assertEquals("7", wae.getResponse().getHeaderString(HttpHeaders.RETRY_AFTER));
+	}
+
+	@Test
+	public void testStale() {
+		ContractorDAO contractor = new ContractorDAO();
+		contractor.setCbeId("0123.456.749");
+		ContractorDAO stale = PeerLookup.read(javax.ws.rs.core.Response.ok(contractor)
+										.header(HttpHeaders.CACHE_CONTROL, "max-age=0")
+										.header(PeerLookup.AGE, 42).build());
+		assertTrue(stale instanceof StaleContractorDAO);
+		assertEquals(42, ((StaleContractorDAO) stale).getAge());
+	}
+
+	@Test
+	public void testUnreachable() {
+		assertEquals(UNREACHABLE, peers.owner("0111222376"));
+		// looked up locally, retrying with a new session
+		given()
+			.when().get("/contractor/0111.222.376")
+			.then().statusCode(Response.SC_OK);
+		assertMetric("application_peer_fallbacks_total");
+	}
+}
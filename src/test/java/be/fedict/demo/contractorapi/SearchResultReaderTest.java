@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi;
+
+import be.fedict.demo.contractorapi.helper.ContractorDAO;
+import be.fedict.demo.contractorapi.helper.SessionExpiredException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import javax.ws.rs.NotFoundException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Check that the streaming and the Jsoup parser give the same results
+ * 
+ * @author Bart Hanssens
+ */
+public class SearchResultReaderTest {
+	private static final String ROW = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+		+ "<partial-response><changes><update id=\"mainForm:dataTab\"><![CDATA[<table>"
+		+ "<thead id=\"mainForm:dataTab_head\"><tr>"
+		+ "<th><span class='ui-column-title'>KBO nummer</span></th><th><span class='ui-column-title'>BTW nummer</span></th>"
+		+ "<th><span class='ui-column-title'>aannemer</span></th><th><span class='ui-column-title'>Erkenningsnummer</span></th>"
+		+ "<th><span class='ui-column-title'>straat</span></th><th><span class='ui-column-title'>Postcode</span></th>"
+		+ "<th><span class='ui-column-title'>Gemeente</span></th><th><span class='ui-column-title'>Beslissingsdatum</span></th>"
+		+ "<th><span class='ui-column-title'>vervaldatum</span></th><th><span class='ui-column-title'>categorie klassen</span></th>"
+		+ "</tr></thead><tbody id=\"mainForm:dataTab_data\"><tr class=\"ui-widget-content\">"
+		+ "<td><button type=\"submit\"><span class=\"ui-button-text\">ui-button</span></button>0123.456.749</td>"
+		+ "<td>BE 0123.456.749</td><td>Jan &amp; Zonen&nbsp;BV</td><td>1234</td><td>Rue de l&#39;&Eacute;glise 5</td>"
+		+ "<td>4000</td><td>Liège</td><td>2019-01-01</td><td>2024-12-31</td><td>D (5) D24 (2) </td>"
+		+ "</tr></tbody></table>]]></update></changes></partial-response>";
+
+	private static final String PAGE = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+		+ "<partial-response><changes><update id=\"mainForm:dataTab\"><![CDATA["
+		+ "<tr data-ri=\"100\"><td>0111.222.376</td><td>BE 0111.222.376</td><td>A</td><td>1</td><td>Straat 1</td>"
+		+ "<td>1000</td><td>Brussel</td><td>2019-01-01</td><td></td><td>A (2)</td></tr>"
+		+ "<tr data-ri=\"101\"><td>0222.333.403</td><td>BE 0222.333.403</td><td>B</td><td>2</td><td>Straat 2</td>"
+		+ "<td>9000</td><td>Gent</td><td>2019-01-01</td><td></td><td>D (5) E (1)</td></tr>"
+		+ "]]></update></changes></partial-response>";
+
+	private static InputStream getResource(String name) {
+		return SearchResultReaderTest.class.getClassLoader().getResourceAsStream(name);
+	}
+
+	private static ContractorDAO parse(boolean streaming, InputStream in) throws IOException {
+		return new SearchResultReader(streaming).readFrom(ContractorDAO.class, ContractorDAO.class, null, null, null, in);
+	}
+
+	private static void assertParsersAgree(InputStream streaming, InputStream jsoup) throws IOException {
+		ContractorDAO expected = parse(false, jsoup);
+		ContractorDAO actual = parse(true, streaming);
+
+		assertEquals(expected.getCbeId(), actual.getCbeId());
+		assertEquals(expected.getVatId(), actual.getVatId());
+		assertEquals(expected.getName(), actual.getName());
+		assertEquals(expected.getLicenseNo(), actual.getLicenseNo());
+		assertEquals(expected.getStreet(), actual.getStreet());
+		assertEquals(expected.getPostalCode(), actual.getPostalCode());
+		assertEquals(expected.getMunicipality(), actual.getMunicipality());
+		assertEquals(expected.getFromDate(), actual.getFromDate());
+		assertEquals(expected.getTillDate(), actual.getTillDate());
+		assertEquals(expected.getCatClasses(), actual.getCatClasses());
+	}
+
+	@Test
+	public void testFound() throws IOException {
+		assertParsersAgree(getResource("found.xml"), getResource("found.xml"));
+	}
+
+	@Test
+	public void testMarkup() throws IOException {
+		byte[] row = ROW.getBytes(StandardCharsets.UTF_8);
+		assertParsersAgree(new ByteArrayInputStream(row), new ByteArrayInputStream(row));
+
+		ContractorDAO contractor = parse(true, new ByteArrayInputStream(row));
+		assertEquals("0123.456.749", contractor.getCbeId());
+		assertEquals("Jan & Zonen BV", contractor.getName());
+		assertEquals("Rue de l'Église 5", contractor.getStreet());
+		assertEquals("2", contractor.getCatClasses().get("D24"));
+	}
+
+	@Test
+	public void testNotFound() {
+		assertThrows(NotFoundException.class, () -> parse(true, getResource("notfound.xml")));
+		assertThrows(NotFoundException.class, () -> parse(false, getResource("notfound.xml")));
+	}
+
+	@Test
+	public void testExpired() {
+		assertThrows(SessionExpiredException.class, () -> parse(true, getResource("expired.xml")));
+		assertThrows(SessionExpiredException.class, () -> parse(false, getResource("expired.xml")));
+	}
+
+	@Test
+	public void testList() throws IOException {
+		for (boolean streaming: new boolean[] { true, false }) {
+			SearchListReader reader = new SearchListReader(new SearchResultReader(streaming));
+
+			List<ContractorDAO> found = reader.readFrom(null, null, null, null, null, getResource("found.xml"));
+			assertEquals(1, found.size());
+
+			List<ContractorDAO> none = reader.readFrom(null, null, null, null, null, getResource("notfound.xml"));
+			assertEquals(0, none.size());
+
+			InputStream in = new ByteArrayInputStream(PAGE.getBytes(StandardCharsets.UTF_8));
+			List<ContractorDAO> page = reader.readFrom(null, null, null, null, null, in);
+			assertEquals(2, page.size());
+			assertEquals("Gent", page.get(1).getMunicipality());
+		}
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi;
+
+import be.fedict.demo.contractorapi.helper.CircuitOpenException;
+import be.fedict.demo.contractorapi.helper.LimitExceededException;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Adaptive limit on requests to upstream
+ * 
+ * @author Bart Hanssens
+ */
+public class UpstreamLimiterTest {
+	private static UpstreamLimiter limiter(int initial) {
+		UpstreamLimiter limiter = new UpstreamLimiter();
+		limiter.initial = initial;
+		limiter.min = 1;
+		limiter.max = 10;
+		limiter.latency = Duration.ofSeconds(1);
+		limiter.backoff = 0.5;
+		limiter.maxWait = Duration.ofMillis(10);
+		limiter.retryAfter = 1;
+		limiter.breaker = new CircuitBreaker();
+		limiter.breaker.failures = 100;
+		limiter.breaker.open = Duration.ofSeconds(30);
+		limiter.init();
+		return limiter;
+	}
+
+	@Test
+	public void testReject() {
+		UpstreamLimiter limiter = limiter(1);
+		CompletableFuture<String> upstream = new CompletableFuture<>();
+		limiter.callAsync(() -> upstream);
+		assertEquals(1, limiter.getInFlight());
+
+		CompletionException ce = assertThrows(CompletionException.class, 
+					() -> limiter.callAsync(() -> CompletableFuture.completedFuture("x")).toCompletableFuture().join());
+		assertTrue(ce.getCause() instanceof LimitExceededException);
+		assertEquals("1", ((LimitExceededException) ce.getCause()).getResponse().getHeaderString("Retry-After"));
+		assertThrows(LimitExceededException.class, () -> limiter.call(() -> "x"));
+
+		upstream.complete("done");
+		assertEquals(0, limiter.getInFlight());
+		assertEquals("x", limiter.call(() -> "x"));
+	}
+
+	@Test
+	public void testIncreaseDecrease() {
+		UpstreamLimiter limiter = limiter(4);
+		// limit is only increased when it is actually used
+		for (int i = 0; i < 20; i++) {
+			assertTrue(limiter.tryAcquire());
+			assertTrue(limiter.tryAcquire());
+			assertTrue(limiter.tryAcquire());
+			limiter.release(1000, false);
+			limiter.release(1000, false);
+			limiter.release(1000, false);
+		}
+		assertTrue(limiter.getLimit() > 4);
+
+		int before = limiter.getLimit();
+		assertTrue(limiter.tryAcquire());
+		limiter.release(Duration.ofSeconds(2).toNanos(), false);
+		assertEquals(before / 2, limiter.getLimit());
+
+		assertThrows(IllegalStateException.class, () -> limiter.call(() -> { throw new IllegalStateException(); }));
+		assertEquals(Math.max(1, before / 4), limiter.getLimit());
+		assertFalse(limiter.getInFlight() > 0);
+	}
+
+	@Test
+	public void testBreaker() {
+		UpstreamLimiter limiter = limiter(4);
+		limiter.breaker.failures = 2;
+		for (int i = 0; i < 2; i++) {
+			assertThrows(IllegalStateException.class, () -> limiter.call(() -> { throw new IllegalStateException(); }));
+		}
+		assertEquals(CircuitBreaker.State.OPEN, limiter.breaker.getState());
+		assertThrows(CircuitOpenException.class, () -> limiter.call(() -> "x"));
+		assertEquals(0, limiter.getInFlight());
+
+		// half-open: one request is let through
+		limiter.breaker.open = Duration.ZERO;
+		assertEquals(CircuitBreaker.State.HALF_OPEN, limiter.breaker.getState());
+		assertEquals("x", limiter.call(() -> "x"));
+		assertEquals(CircuitBreaker.State.CLOSED, limiter.breaker.getState());
+	}
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi.helper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test vectors from RFC 8949 appendix A
+ * 
+ * @author Bart Hanssens
+ */
+public class CborEncoderTest {
+	private interface Encoding {
+		void encode(CborEncoder enc) throws IOException;
+	}
+
+	private static String hex(Encoding encoding) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		CborEncoder enc = new CborEncoder(out);
+		encoding.encode(enc);
+		enc.flush();
+
+		StringBuilder buf = new StringBuilder();
+		for (byte b: out.toByteArray()) {
+			buf.append(String.format("%02x", b));
+		}
+		return buf.toString();
+	}
+
+	@Test
+	public void testIntegers() throws IOException {
+		assertEquals("00", hex(e -> e.writeInt(0)));
+		assertEquals("17", hex(e -> e.writeInt(23)));
+		assertEquals("1818", hex(e -> e.writeInt(24)));
+		assertEquals("1903e8", hex(e -> e.writeInt(1000)));
+		assertEquals("1a000f4240", hex(e -> e.writeInt(1000000)));
+		assertEquals("1b000000e8d4a51000", hex(e -> e.writeInt(1000000000000L)));
+		assertEquals("20", hex(e -> e.writeInt(-1)));
+		assertEquals("3903e7", hex(e -> e.writeInt(-1000)));
+	}
+
+	@Test
+	public void testStrings() throws IOException {
+		assertEquals("60", hex(e -> e.writeString("")));
+		assertEquals("6449455446", hex(e -> e.writeString("IETF")));
+		assertEquals("62c3bc", hex(e -> e.writeString("ü")));
+		assertEquals("f6", hex(e -> e.writeString(null)));
+	}
+
+	@Test
+	public void testStructures() throws IOException {
+		assertEquals("80", hex(e -> e.writeArray(0)));
+		assertEquals("a201020304", hex(e -> e.writeMap(2).writeInt(1).writeInt(2).writeInt(3).writeInt(4)));
+		assertEquals("f5f4", hex(e -> e.writeBoolean(true).writeBoolean(false)));
+		assertEquals("d86400", hex(e -> e.writeDate(LocalDate.of(1970, 1, 1))));
+		assertEquals("d8641945e9", hex(e -> e.writeDate(LocalDate.of(2019, 1, 1))));
+	}
+
+	@Test
+	public void testLongString() throws IOException {
+		String str = "é".repeat(5000);
+		// 10000 bytes, does not fit in the buffer
+		assertEquals(6 + 20000, hex(e -> e.writeString(str)).length());
+	}
+}
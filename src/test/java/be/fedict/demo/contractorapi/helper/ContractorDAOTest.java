@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi.helper;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.json.bind.Jsonb;
+import javax.json.bind.JsonbBuilder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Bart Hanssens
+ */
+public class ContractorDAOTest {
+	@Test
+	public void testCategories() {
+		Map<String, String> expected = new TreeMap<>();
+		expected.put("D", "5");
+		expected.put("D24", "2");
+		expected.put("D02", "1");
+		expected.put("E", "3");
+		expected.put("P1", "4");
+
+		short[] packed = CatClasses.parse("E (3) D (5) D24 (2) D02 (1) junk P1 (4) ");
+		assertEquals(expected, CatClasses.toMap(packed));
+		assertEquals(2, CatClasses.get(packed, CatClasses.encode("D24")));
+		assertEquals(-1, CatClasses.get(packed, CatClasses.encode("D2")));
+		assertEquals(expected, CatClasses.toMap(CatClasses.pack(expected)));
+		assertEquals(0, CatClasses.parse("").length);
+	}
+
+	@Test
+	public void testDates() {
+		assertEquals(LocalDate.of(2019, 1, 31), ContractorDAO.parseDate("2019-01-31"));
+		assertNull(ContractorDAO.parseDate(""));
+		assertThrows(DateTimeException.class, () -> ContractorDAO.parseDate("2019-02-30"));
+		assertThrows(DateTimeException.class, () -> ContractorDAO.parseDate("31/01/2019"));
+	}
+
+	@Test
+	public void testEquals() {
+		ContractorDAO c = new ContractorDAO();
+		c.setCbeId("0123.456.749");
+		c.setTillDate(ContractorDAO.parseDate("2025-12-31"));
+		c.setCatClassCodes(CatClasses.parse("D (5) E (1)"));
+
+		ContractorDAO copy = new ContractorDAO(c);
+		assertEquals(c, copy);
+		assertEquals(c.hashCode(), copy.hashCode());
+		assertEquals(c, new StaleContractorDAO(c, 10));
+
+		copy.setCatClassCodes(CatClasses.parse("D (5) E (2)"));
+		assertNotEquals(c, copy);
+	}
+
+	@Test
+	public void testJson() throws Exception {
+		ContractorDAO c = new ContractorDAO();
+		c.setFromDate(ContractorDAO.parseDate("2019-01-01"));
+		c.setCatClasses(CatClasses.toMap(CatClasses.parse("A (2)")));
+
+		try (Jsonb jsonb = JsonbBuilder.create()) {
+			String json = jsonb.toJson(c);
+			assertTrue(json.contains("\"fromDate\":\"2019-01-01T00:00:00Z[UTC]\""), json);
+			assertTrue(json.contains("\"catClasses\":{\"A\":\"2\"}"), json);
+			assertTrue(!json.contains("catClassCodes"), json);
+		}
+	}
+}
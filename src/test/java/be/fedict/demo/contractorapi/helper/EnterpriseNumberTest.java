@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi.helper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Validate and normalize enterprise numbers
+ * 
+ * @author Bart Hanssens
+ */
+public class EnterpriseNumberTest {
+	@Test
+	public void testValid() {
+		assertNull(EnterpriseNumber.validate("0123.456.749"));
+		assertNull(EnterpriseNumber.validate("0123456749"));
+		assertNull(EnterpriseNumber.validate("123456749"));
+		assertNull(EnterpriseNumber.validate("BE 0222.333.403"));
+		assertNull(EnterpriseNumber.validate(" be0111-222-376 "));
+		// remainder 0 gives check digits 97
+		assertNull(EnterpriseNumber.validate("0000.000.097"));
+	}
+
+	@Test
+	public void testInvalid() {
+		assertEquals(EnterpriseNumber.Invalid.EMPTY, EnterpriseNumber.validate(null));
+		assertEquals(EnterpriseNumber.Invalid.EMPTY, EnterpriseNumber.validate(" BE "));
+		assertEquals(EnterpriseNumber.Invalid.CHARACTER, EnterpriseNumber.validate("0123.456.74x"));
+		assertEquals(EnterpriseNumber.Invalid.CHARACTER, EnterpriseNumber.validate("NL 0123.456.749"));
+		assertEquals(EnterpriseNumber.Invalid.LENGTH, EnterpriseNumber.validate("987"));
+		assertEquals(EnterpriseNumber.Invalid.LENGTH, EnterpriseNumber.validate("01234567490"));
+		assertEquals(EnterpriseNumber.Invalid.CHECKSUM, EnterpriseNumber.validate("0123.456.789"));
+		assertEquals(EnterpriseNumber.Invalid.CHECKSUM, EnterpriseNumber.validate("0123.456.794"));
+	}
+
+	@Test
+	public void testNormalize() {
+		assertEquals("0123456749", EnterpriseNumber.normalize("BE 0123.456.749"));
+		assertEquals("0123456749", EnterpriseNumber.normalize("123456749"));
+		assertEquals("987", EnterpriseNumber.normalize("987"));
+		assertEquals("", EnterpriseNumber.normalize("BE"));
+	}
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2020, Bart Hanssens <bart.hanssens@bosa.fgov.be>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fedict.demo.contractorapi.helper;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Bart Hanssens
+ */
+public class SingleFlightTest {
+	@Test
+	public void testShared() {
+		SingleFlight<String, String> flight = new SingleFlight<>();
+		AtomicInteger calls = new AtomicInteger();
+		CompletableFuture<String> upstream = new CompletableFuture<>();
+
+		CompletionStage<String> first = flight.run("a", k -> { calls.incrementAndGet(); return upstream; });
+		CompletionStage<String> second = flight.run("a", k -> { calls.incrementAndGet(); return upstream; });
+		assertEquals(1, calls.get());
+		assertEquals(1, flight.size());
+
+		upstream.complete("done");
+		assertEquals("done", first.toCompletableFuture().join());
+		assertEquals("done", second.toCompletableFuture().join());
+		assertEquals(0, flight.size());
+
+		flight.run("a", k -> { calls.incrementAndGet(); return CompletableFuture.completedFuture("again"); });
+		assertEquals(2, calls.get());
+		assertEquals(0, flight.size());
+	}
+
+	@Test
+	public void testError() {
+		SingleFlight<String, String> flight = new SingleFlight<>();
+		CompletableFuture<String> upstream = new CompletableFuture<>();
+
+		CompletionStage<String> first = flight.run("a", k -> upstream);
+		CompletionStage<String> second = flight.run("a", k -> upstream);
+		upstream.completeExceptionally(new IllegalStateException("failed"));
+
+		assertTrue(first.toCompletableFuture().isCompletedExceptionally());
+		assertTrue(second.toCompletableFuture().isCompletedExceptionally());
+		assertEquals(0, flight.size());
+	}
+}